@@ -0,0 +1,18 @@
+package io.jr576.utils.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Runs the benchmarks selected on the usual JMH command line with the gc profiler always on,
+//so every result comes with the allocation rate and bytes per operation next to the time.
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                                              .addProfiler(GCProfiler.class)
+                                              .build();
+        new Runner(options).run();
+    }
+}
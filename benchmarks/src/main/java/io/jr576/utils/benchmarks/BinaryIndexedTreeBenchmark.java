@@ -0,0 +1,75 @@
+package io.jr576.utils.benchmarks;
+
+import io.jr576.utils.BinaryIndexedTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Bulk construction and batches of random updates and queries against the equivalent loops of single calls.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BinaryIndexedTreeBenchmark {
+    @Param({"65536", "16777216"})
+    public int size;
+
+    @Param({"1024", "1048576"})
+    public int batch;
+
+    private long[] values;
+    private int[] indices;
+    private long[] deltas;
+    private long[] sums;
+    private BinaryIndexedTree tree;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size);
+        values = random.longs(size + 1, 0, 1_000_000).toArray();
+        indices = random.ints(batch, 1, size + 1).toArray();
+        deltas = random.longs(batch, 0, 1_000_000).toArray();
+        sums = new long[batch];
+        tree = new BinaryIndexedTree(values);
+    }
+
+    @Benchmark
+    public BinaryIndexedTree buildBulk() {
+        return new BinaryIndexedTree(values);
+    }
+
+    @Benchmark
+    public BinaryIndexedTree buildByAdd() {
+        BinaryIndexedTree built = new BinaryIndexedTree(size);
+        for (int i = 1; i <= size; i++)
+            built.add(i, values[i]);
+        return built;
+    }
+
+    @Benchmark
+    public void addAll() {
+        tree.addAll(indices, deltas);
+    }
+
+    @Benchmark
+    public void addLoop() {
+        for (int i = 0; i < batch; i++)
+            tree.add(indices[i], deltas[i]);
+    }
+
+    @Benchmark
+    public long[] getSums() {
+        tree.getSums(indices, sums);
+        return sums;
+    }
+
+    @Benchmark
+    public long[] getSumLoop() {
+        for (int i = 0; i < batch; i++)
+            sums[i] = tree.getSum(indices[i]);
+        return sums;
+    }
+}
@@ -0,0 +1,85 @@
+package io.jr576.utils.benchmarks;
+
+import io.jr576.utils.BinaryIndexedTree;
+import io.jr576.utils.ConcurrentBinaryIndexedTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+//Throughput of a shared frequency tree under concurrent updaters, ConcurrentBinaryIndexedTree against a BinaryIndexedTree
+//behind one lock. main sweeps 1, 2, 4, ..., 64 threads:
+//    java -cp benchmarks/target/benchmarks.jar io.jr576.utils.benchmarks.ConcurrentBinaryIndexedTreeBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ConcurrentBinaryIndexedTreeBenchmark {
+    @Param({"1048576"})
+    public int size;
+
+    private ConcurrentBinaryIndexedTree concurrent;
+    private BinaryIndexedTree locked;
+
+    @State(Scope.Thread)
+    public static class Indices {
+        private final SplittableRandom random = new SplittableRandom();
+
+        int next(int size) {
+            return 1 + random.nextInt(size);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        concurrent = new ConcurrentBinaryIndexedTree(size);
+        locked = new BinaryIndexedTree(size);
+    }
+
+    @Benchmark
+    public void addConcurrent(Indices indices) {
+        concurrent.add(indices.next(size), 1);
+    }
+
+    @Benchmark
+    public void addLocked(Indices indices) {
+        int index = indices.next(size);
+        synchronized (locked) {
+            locked.add(index, 1);
+        }
+    }
+
+    //one query per three updates
+    @Benchmark
+    public long mixedConcurrent(Indices indices) {
+        int index = indices.next(size);
+        if ((index & 3) == 0)
+            return concurrent.getSum(index);
+        concurrent.add(index, 1);
+        return 0;
+    }
+
+    @Benchmark
+    public long mixedLocked(Indices indices) {
+        int index = indices.next(size);
+        synchronized (locked) {
+            if ((index & 3) == 0)
+                return locked.getSum(index);
+            locked.add(index, 1);
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads = 1; threads <= 64; threads *= 2)
+            new Runner(new OptionsBuilder().include(ConcurrentBinaryIndexedTreeBenchmark.class.getName())
+                                           .threads(threads)
+                                           .addProfiler(GCProfiler.class)
+                                           .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package io.jr576.utils.benchmarks;
+
+import io.jr576.utils.Dirichlet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Every product and power of Dirichlet, with and without a modulus. pool = serial runs the operation inside a
+//single threaded ForkJoinPool, whose parallel streams then stay on that one thread, pool = common uses all cores.
+//zeta has f(1) = 1 and takes the binomial series for pow, shifted has f(1) = 2 and takes repeated squaring.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DirichletBenchmark {
+    private static final long mod = 1_000_000_007;
+
+    @Param({"1000000000", "100000000000", "10000000000000"})
+    public long upperbound;
+
+    @Param({"common", "serial"})
+    public String pool;
+
+    private ForkJoinPool serialPool;
+    private Dirichlet zeta;
+    private Dirichlet identity;
+    private Dirichlet shifted;
+
+    @Setup
+    public void setup() {
+        serialPool = new ForkJoinPool(1);
+        zeta = new Dirichlet(upperbound, v -> v);
+        identity = new Dirichlet(upperbound, v -> v % 2 == 0 ? v / 2 * (v + 1) : (v + 1) / 2 * v);
+        shifted = new Dirichlet(upperbound, v -> v + 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serialPool.shutdown();
+    }
+
+    private Dirichlet run(Supplier<Dirichlet> operation) {
+        return pool.equals("serial") ? serialPool.submit(operation::get).join() : operation.get();
+    }
+
+    @Benchmark
+    public Dirichlet multiply() {
+        return run(() -> zeta.multiply(identity));
+    }
+
+    @Benchmark
+    public Dirichlet multiplyTwo() {
+        return run(() -> zeta.multiplyTwo(identity));
+    }
+
+    @Benchmark
+    public Dirichlet multiplyMod() {
+        return run(() -> zeta.multiplyMod(identity, mod));
+    }
+
+    @Benchmark
+    public Dirichlet square() {
+        return run(() -> zeta.square());
+    }
+
+    @Benchmark
+    public Dirichlet squareMod() {
+        return run(() -> zeta.squareMod(mod));
+    }
+
+    @Benchmark
+    public Dirichlet powSeries() {
+        return run(() -> zeta.pow(5));
+    }
+
+    @Benchmark
+    public Dirichlet powSquaring() {
+        return run(() -> shifted.pow(5));
+    }
+
+    @Benchmark
+    public Dirichlet powModSeries() {
+        return run(() -> zeta.powMod(1_000_000_000_000_000L, mod));
+    }
+
+    @Benchmark
+    public Dirichlet powModSquaring() {
+        return run(() -> shifted.powMod(1_000_000_000_000_000L, mod));
+    }
+
+    @Benchmark
+    public Dirichlet divide() {
+        return run(() -> identity.divide(zeta));
+    }
+
+    @Benchmark
+    public Dirichlet divideMod() {
+        return run(() -> identity.divideMod(zeta, mod));
+    }
+}
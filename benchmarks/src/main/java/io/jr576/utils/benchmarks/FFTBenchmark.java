@@ -0,0 +1,54 @@
+package io.jr576.utils.benchmarks;
+
+import io.jr576.utils.FFT;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Products of two polynomials of length size / 2 modulo each of a few goodPrimes, plus powCutoff truncated to that length.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class FFTBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"998244353", "469762049", "754974721"})
+    public int prime;
+
+    private FFT fft;
+    private long[] polA;
+    private long[] polB;
+
+    @Setup
+    public void setup() {
+        fft = new FFT(prime);
+        Random random = new Random(size);
+        polA = random.longs(size / 2, 0, prime).toArray();
+        polB = random.longs(size / 2, 0, prime).toArray();
+    }
+
+    @Benchmark
+    public long[] multiply() {
+        return fft.multiply(polA, polB);
+    }
+
+    @Benchmark
+    public long[] square() {
+        return fft.square(polA);
+    }
+
+    @Benchmark
+    public long[] powCutoff() {
+        return fft.powCutoff(polA, 1000, size / 2 - 1);
+    }
+
+    @Benchmark
+    public long[] multiplyExact() {
+        return FFT.multiplyExact(polA, polB);
+    }
+}
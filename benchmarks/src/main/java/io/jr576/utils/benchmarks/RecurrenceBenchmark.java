@@ -0,0 +1,40 @@
+package io.jr576.utils.benchmarks;
+
+import io.jr576.utils.Recurrence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//The 10^18-th term of a random linear recurrence by its degree, wrapping and modulo a prime.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RecurrenceBenchmark {
+    private static final long n = 1_000_000_000_000_000_000L;
+    private static final long mod = 998_244_353;
+
+    @Param({"2", "16", "128", "1024"})
+    public int degree;
+
+    private Recurrence recurrence;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(degree);
+        recurrence = new Recurrence(random.longs(degree, 0, mod).toArray(), random.longs(degree, 0, mod).toArray());
+    }
+
+    @Benchmark
+    public long getTerm() {
+        return recurrence.getTerm(n);
+    }
+
+    @Benchmark
+    public long getTermMod() {
+        return recurrence.getTerm(n, mod);
+    }
+}
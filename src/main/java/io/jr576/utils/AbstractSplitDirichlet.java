@@ -0,0 +1,116 @@
+package io.jr576.utils;
+
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+//The values of a Dirichlet in two arrays without the quotients: small[q] holds F(q) for q <= sqrt(n) and large[d] holds F(n / d)
+//for d <= largeCount, the number of quotients above sqrt(n). This class owns that index arithmetic, the subclasses only store
+//the cells: SplitDirichlet as longs, half the memory of a Dirichlet, and IntSplitDirichlet as int residues, a quarter.
+//All accessors that take q or d are plain array reads. get(quotient) needs the division n / quotient for a large quotient,
+//getLargeDivided walks v / a for v = n / d through large[d * a] and only divides once it drops to the small side.
+public abstract class AbstractSplitDirichlet {
+    public final long upperbound;
+    public final int upperboundSqrt;
+    public final int largeCount;
+
+    public interface IndexConsumer {
+        void accept(int index, long value);
+    }
+
+    protected AbstractSplitDirichlet(long upperbound) {
+        this.upperbound = upperbound;
+        this.upperboundSqrt = (int) Math.sqrt(upperbound);
+        this.largeCount = upperbound / upperboundSqrt == upperboundSqrt ? upperboundSqrt - 1 : upperboundSqrt;
+    }
+
+    public abstract long getSmall(int q);
+
+    public abstract long getLarge(int d);
+
+    //the subclass may reduce the value, every write goes through these two
+    protected abstract void setSmall(int q, long value);
+
+    protected abstract void setLarge(int d, long value);
+
+    protected final void fill(LongUnaryOperator function) {
+        for (int q = 1; q <= upperboundSqrt; q++)
+            setSmall(q, function.applyAsLong(q));
+        for (int d = 1; d <= largeCount; d++)
+            setLarge(d, function.applyAsLong(upperbound / d));
+    }
+
+    protected final void fill(Dirichlet dirichlet) {
+        for (int q = 1; q <= upperboundSqrt; q++)
+            setSmall(q, dirichlet.values[q]);
+        int length = dirichlet.values.length;
+        for (int d = 1; d <= largeCount; d++)
+            setLarge(d, dirichlet.values[length - d]);
+    }
+
+    public Dirichlet toDirichlet() {
+        Dirichlet dirichlet = new Dirichlet(upperbound);
+        for (int q = 1; q <= upperboundSqrt; q++)
+            dirichlet.values[q] = getSmall(q);
+        int length = dirichlet.values.length;
+        for (int d = 1; d <= largeCount; d++)
+            dirichlet.values[length - d] = getLarge(d);
+        return dirichlet;
+    }
+
+    public long largeQuotient(int d) {
+        return upperbound / d;
+    }
+
+    //F(n / (d * a)), i.e. F at (n / d) / a
+    public long getLargeDivided(int d, int a) {
+        long divisor = (long) d * a;
+        return divisor <= largeCount ? getLarge((int) divisor) : getSmall((int) (upperbound / divisor));
+    }
+
+    //F at the smallest quotient >= quotient, like Dirichlet.get
+    public long get(long quotient) {
+        return quotient <= upperboundSqrt ? getSmall((int) quotient) : getLarge((int) (upperbound / quotient));
+    }
+
+    public void put(long quotient, long value) {
+        if (quotient <= upperboundSqrt)
+            setSmall((int) quotient, value);
+        else
+            setLarge((int) (upperbound / quotient), value);
+    }
+
+    //q = 1, ..., sqrt(n) ascending
+    public void forEachSmall(IndexConsumer consumer) {
+        for (int q = 1; q <= upperboundSqrt; q++)
+            consumer.accept(q, getSmall(q));
+    }
+
+    //d = largeCount, ..., 1, i.e. the large quotients n / d ascending
+    public void forEachLarge(IndexConsumer consumer) {
+        for (int d = largeCount; d >= 1; d--)
+            consumer.accept(d, getLarge(d));
+    }
+
+    //small[q] = function(q, small[q])
+    public void mapSmall(LongBinaryOperator function) {
+        for (int q = 1; q <= upperboundSqrt; q++)
+            setSmall(q, function.applyAsLong(q, getSmall(q)));
+    }
+
+    //large[d] = function(d, large[d])
+    public void mapLarge(LongBinaryOperator function) {
+        for (int d = 1; d <= largeCount; d++)
+            setLarge(d, function.applyAsLong(d, getLarge(d)));
+    }
+
+    //the sums are formed as longs, which wrap for SplitDirichlet and cannot overflow for the int residues
+    public void summatory() {
+        for (int q = 1; q <= upperboundSqrt; q++)
+            setSmall(q, getSmall(q) + getSmall(q - 1));
+        long previous = getSmall(upperboundSqrt);
+        for (int d = largeCount; d >= 1; d--) {
+            setLarge(d, getLarge(d) + previous);
+            previous = getLarge(d);
+        }
+    }
+}
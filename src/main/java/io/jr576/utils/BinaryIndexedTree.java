@@ -1,7 +1,6 @@
 package io.jr576.utils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class BinaryIndexedTree {
     public final long[] binaryIndexedTree;
@@ -12,6 +11,32 @@ public class BinaryIndexedTree {
         binaryIndexedTree = new long[upperbound + 1];
     }
 
+    //the tree over values[1...], values[0] is ignored. Every cell passes its partial sum on to its parent once, O(n)
+    public BinaryIndexedTree(long[] values) {
+        this(values.length - 1);
+        System.arraycopy(values, 1, binaryIndexedTree, 1, upperbound);
+        propagate(binaryIndexedTree, upperbound);
+    }
+
+    public BinaryIndexedTree(long[] values, long mod) {
+        this(values.length - 1);
+        for (int i = 1; i <= upperbound; i++)
+            binaryIndexedTree[i] = Math.floorMod(values[i], mod);
+        for (int i = 1; i <= upperbound; i++) {
+            int parent = i + Integer.lowestOneBit(i);
+            if (parent <= upperbound)
+                binaryIndexedTree[parent] = (binaryIndexedTree[parent] + binaryIndexedTree[i]) % mod;
+        }
+    }
+
+    private static void propagate(long[] cells, int upperbound) {
+        for (int i = 1; i <= upperbound; i++) {
+            int parent = i + Integer.lowestOneBit(i);
+            if (parent <= upperbound)
+                cells[parent] += cells[i];
+        }
+    }
+
     public long getSum(int index) {
         long sum = 0;
         while (index > 0) {
@@ -44,12 +69,89 @@ public class BinaryIndexedTree {
         }
     }
 
+    //smallest index >= 1 with getSum(index) >= target, upperbound + 1 if there is none. Needs non-negative values, i.e. a monotone
+    //prefix sum as for a counting multiset, where findByPrefix(k) is the k-th smallest element. Binary lifting descends from
+    //the highest power of two: the cell of position + step covers exactly (position, position + step], O(log n).
+    public int findByPrefix(long target) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(Math.max(upperbound, 1)); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= upperbound && binaryIndexedTree[next] < target) {
+                position = next;
+                target -= binaryIndexedTree[next];
+            }
+        }
+        return position + 1;
+    }
+
+    //a batch of k walks of log n cells against one linear pass over all n cells
+    private boolean linearBatch(int count) {
+        return 8L * count >= upperbound;
+    }
+
+    //the positions of idx grouped by their top bits with a single counting pass, about one index per group, so the walks
+    //visit the tree in ascending order of cache lines without the cost of a full sort
+    private int[] ascendingOrder(int[] idx) {
+        int bits = 32 - Integer.numberOfLeadingZeros(upperbound);
+        int shift = Math.max(0, bits - (32 - Integer.numberOfLeadingZeros(idx.length)));
+        int[] start = new int[(upperbound >>> shift) + 2];
+        for (int index : idx)
+            start[(checkIndex(index) >>> shift) + 1]++;
+        for (int i = 1; i < start.length; i++)
+            start[i] += start[i - 1];
+        int[] order = new int[idx.length];
+        for (int i = 0; i < idx.length; i++)
+            order[start[idx[i] >>> shift]++] = i;
+        return order;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index > upperbound)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for the tree.");
+        return index;
+    }
+
+    //add(idx[i], vals[i]) for all i. Large batches are collected as point values and propagated like the bulk constructor,
+    //smaller ones walk the tree in ascending index order so that neighbouring walks share cache lines.
+    public void addAll(int[] idx, long[] vals) {
+        if (idx.length != vals.length)
+            throw new IllegalArgumentException("Indices and values must have the same length.");
+        if (linearBatch(idx.length)) {
+            long[] delta = new long[upperbound + 1];
+            for (int i = 0; i < idx.length; i++)
+                delta[checkIndex(idx[i])] += vals[i];
+            propagate(delta, upperbound);
+            for (int i = 1; i <= upperbound; i++)
+                binaryIndexedTree[i] += delta[i];
+        } else
+            for (int i : ascendingOrder(idx))
+                if (idx[i] > 0)
+                    add(idx[i], vals[i]);
+    }
+
+    //out[i] = getSum(idx[i]) for all i, from the prefix array for large batches and in ascending index order otherwise
+    public void getSums(int[] idx, long[] out) {
+        if (idx.length != out.length)
+            throw new IllegalArgumentException("Indices and results must have the same length.");
+        if (linearBatch(idx.length)) {
+            long[] prefix = toPrefixArray();
+            for (int i = 0; i < idx.length; i++)
+                out[i] = prefix[checkIndex(idx[i])];
+        } else
+            for (int i : ascendingOrder(idx))
+                out[i] = getSum(idx[i]);
+    }
+
+    //getSum(i) for all 0 <= i <= upperbound in O(n): the cell of i covers (i - lowbit(i), i]
+    public long[] toPrefixArray() {
+        long[] prefix = new long[upperbound + 1];
+        for (int i = 1; i <= upperbound; i++)
+            prefix[i] = prefix[i - Integer.lowestOneBit(i)] + binaryIndexedTree[i];
+        return prefix;
+    }
+
     @Override
     public String toString() {
-        List<Long> tempList = new ArrayList<>();
-        for (int i = 0; i <= upperbound; i++)
-            tempList.add(getSum(i));
-        return tempList.toString();
+        return Arrays.toString(toPrefixArray());
     }
 }
-
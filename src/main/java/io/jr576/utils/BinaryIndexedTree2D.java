@@ -0,0 +1,38 @@
+package io.jr576.utils;
+
+//Dense 2D BinaryIndexedTree over [1, rows] x [1, columns] in one flat long[], row by row, (rows + 1) * (columns + 1) cells.
+//Meant for small grids, see SparseBinaryIndexedTree2D for many points on large coordinates.
+public class BinaryIndexedTree2D {
+    public final int rows;
+    public final int columns;
+    private final int stride;
+    private final long[] binaryIndexedTree;
+
+    public BinaryIndexedTree2D(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.stride = columns + 1;
+        binaryIndexedTree = new long[Math.multiplyExact(rows + 1, stride)];
+    }
+
+    public void add(int row, int column, long val) {
+        for (int i = row; i <= rows; i += Integer.lowestOneBit(i))
+            for (int j = column; j <= columns; j += Integer.lowestOneBit(j))
+                binaryIndexedTree[i * stride + j] += val;
+    }
+
+    //sum over [1, row] x [1, column]
+    public long getSum(int row, int column) {
+        long sum = 0;
+        for (int i = row; i > 0; i -= Integer.lowestOneBit(i))
+            for (int j = column; j > 0; j -= Integer.lowestOneBit(j))
+                sum += binaryIndexedTree[i * stride + j];
+        return sum;
+    }
+
+    //sum over [firstRow, lastRow] x [firstColumn, lastColumn]
+    public long getSum(int firstRow, int firstColumn, int lastRow, int lastColumn) {
+        return getSum(lastRow, lastColumn) - getSum(firstRow - 1, lastColumn)
+               - getSum(lastRow, firstColumn - 1) + getSum(firstRow - 1, firstColumn - 1);
+    }
+}
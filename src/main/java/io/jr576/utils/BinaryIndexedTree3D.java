@@ -0,0 +1,50 @@
+package io.jr576.utils;
+
+//Dense 3D BinaryIndexedTree over [1, sizeX] x [1, sizeY] x [1, sizeZ] in one flat long[] with z varying fastest.
+public class BinaryIndexedTree3D {
+    public final int sizeX;
+    public final int sizeY;
+    public final int sizeZ;
+    private final int strideY;
+    private final int strideX;
+    private final long[] binaryIndexedTree;
+
+    public BinaryIndexedTree3D(int sizeX, int sizeY, int sizeZ) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.strideY = sizeZ + 1;
+        this.strideX = Math.multiplyExact(sizeY + 1, strideY);
+        binaryIndexedTree = new long[Math.multiplyExact(sizeX + 1, strideX)];
+    }
+
+    public void add(int x, int y, int z, long val) {
+        for (int i = x; i <= sizeX; i += Integer.lowestOneBit(i))
+            for (int j = y; j <= sizeY; j += Integer.lowestOneBit(j))
+                for (int k = z; k <= sizeZ; k += Integer.lowestOneBit(k))
+                    binaryIndexedTree[i * strideX + j * strideY + k] += val;
+    }
+
+    //sum over [1, x] x [1, y] x [1, z]
+    public long getSum(int x, int y, int z) {
+        long sum = 0;
+        for (int i = x; i > 0; i -= Integer.lowestOneBit(i))
+            for (int j = y; j > 0; j -= Integer.lowestOneBit(j))
+                for (int k = z; k > 0; k -= Integer.lowestOneBit(k))
+                    sum += binaryIndexedTree[i * strideX + j * strideY + k];
+        return sum;
+    }
+
+    //sum over the box [firstX, lastX] x [firstY, lastY] x [firstZ, lastZ] by inclusion-exclusion over its 8 corners
+    public long getSum(int firstX, int firstY, int firstZ, int lastX, int lastY, int lastZ) {
+        long sum = 0;
+        for (int corner = 0; corner < 8; corner++) {
+            int x = (corner & 1) == 0 ? lastX : firstX - 1;
+            int y = (corner & 2) == 0 ? lastY : firstY - 1;
+            int z = (corner & 4) == 0 ? lastZ : firstZ - 1;
+            long term = getSum(x, y, z);
+            sum += Integer.bitCount(corner) % 2 == 0 ? term : -term;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,57 @@
+package io.jr576.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+//BinaryIndexedTree that any number of threads may update and query at the same time without locks.
+//add does an atomic getAndAdd on every cell it touches, addMod a compareAndSet loop per cell, the queries read cells volatile.
+//Read semantics: the cells of a getSum(index) walk cover disjoint ranges whose union is [1, index], so the walk reads exactly
+//one cell containing any given position. A concurrent add is therefore seen completely or not at all: getSum returns the
+//sum over every add that finished before it started plus some subset of the adds running meanwhile, never a torn update.
+//Different queries are not one snapshot though, getSum(last) - getSum(first - 1) may mix two states while adds run.
+//All threads update the same few high cells, so heavy add traffic from many cores contends on their cache lines.
+public class ConcurrentBinaryIndexedTree {
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+    public final int upperbound;
+    private final long[] binaryIndexedTree;
+
+    public ConcurrentBinaryIndexedTree(int upperbound) {
+        this.upperbound = upperbound;
+        binaryIndexedTree = new long[upperbound + 1];
+    }
+
+    public long getSum(int index) {
+        long sum = 0;
+        while (index > 0) {
+            sum += (long) CELLS.getVolatile(binaryIndexedTree, index);
+            index -= Integer.lowestOneBit(index);
+        }
+        return sum;
+    }
+
+    public long getSumMod(int index, long mod) {
+        long sum = 0;
+        while (index > 0) {
+            sum = (sum + (long) CELLS.getVolatile(binaryIndexedTree, index)) % mod;
+            index -= Integer.lowestOneBit(index);
+        }
+        return sum;
+    }
+
+    public void add(int index, long val) {
+        while (index <= upperbound) {
+            CELLS.getAndAdd(binaryIndexedTree, index, val);
+            index += Integer.lowestOneBit(index);
+        }
+    }
+
+    public void addMod(int index, long val, long mod) {
+        while (index <= upperbound) {
+            long cell;
+            do {
+                cell = (long) CELLS.getVolatile(binaryIndexedTree, index);
+            } while (!CELLS.compareAndSet(binaryIndexedTree, index, cell, (cell + val) % mod));
+            index += Integer.lowestOneBit(index);
+        }
+    }
+}
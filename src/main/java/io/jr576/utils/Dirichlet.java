@@ -1,8 +1,13 @@
 package io.jr576.utils;
 
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.LongBinaryOperator;
 import java.util.function.LongUnaryOperator;
 import java.util.stream.IntStream;
@@ -14,6 +19,7 @@ public class Dirichlet {
     public final int upperboundSqrt;
     final boolean removeOne;
     final long breakPoint; //upperbound^(2/3)
+    private static final long denseBreakpoint = 1L << 25; //below it the plain hyperbola over all quotients is faster
 
     public Dirichlet(long upperbound) {
         this.upperbound = upperbound;
@@ -49,6 +55,17 @@ public class Dirichlet {
         this.breakPoint = copyFieldsOf.breakPoint;
     }
 
+    //binary checkpoint, see MappedDirichlet for the format and a read only view that maps the file instead of reading it
+    public void save(Path path) throws IOException {
+        MappedDirichlet.write(this, path);
+    }
+
+    public static Dirichlet load(Path path) throws IOException {
+        try (MappedDirichlet mapped = MappedDirichlet.open(path)) {
+            return mapped.toDirichlet();
+        }
+    }
+
     public int quotientToIndex(long quotient) {
         if (quotient <= upperboundSqrt)
             return (int) quotient;
@@ -117,6 +134,11 @@ public class Dirichlet {
         values[quotientIndex] = (values[quotientIndex] + valueToAdd) % mod;
     }
 
+    public void addMod(long quotient, long valueToAdd, Modulus modulus) {
+        int quotientIndex = quotientToIndex(quotient);
+        values[quotientIndex] = modulus.add(modulus.reduce(values[quotientIndex]), modulus.reduce(valueToAdd));
+    }
+
     public void addMod(long first, long last, long valueToAdd, long mod) {
         long quotient = last;
         int quotientIndex = quotientToIndex(last);
@@ -127,6 +149,17 @@ public class Dirichlet {
         }
     }
 
+    public void addMod(long first, long last, long valueToAdd, Modulus modulus) {
+        long toAdd = modulus.reduce(valueToAdd);
+        long quotient = last;
+        int quotientIndex = quotientToIndex(last);
+        while (quotient >= first) {
+            values[quotientIndex] = modulus.add(toAdd, modulus.reduce(values[quotientIndex]));
+            quotientIndex--;
+            quotient = quotients[quotientIndex];
+        }
+    }
+
     public void addMod(long first, long last, LongUnaryOperator toAddFunction, long mod) {
         long quotient = last;
         int quotientIndex = quotientToIndex(last);
@@ -137,112 +170,277 @@ public class Dirichlet {
         }
     }
 
+    public void addMod(long first, long last, LongUnaryOperator toAddFunction, Modulus modulus) {
+        long quotient = last;
+        int quotientIndex = quotientToIndex(last);
+        while (quotient >= first) {
+            values[quotientIndex] = modulus.add(modulus.reduce(values[quotientIndex]), modulus.reduce(toAddFunction.applyAsLong(quotient)));
+            quotientIndex--;
+            quotient = quotients[quotientIndex];
+        }
+    }
+
     public void summatory() {
         for (int quotientIndex = 1; quotientIndex < quotients.length; quotientIndex++)
             values[quotientIndex] += values[quotientIndex - 1];
     }
 
     public Dirichlet square() {
-        Dirichlet square = new Dirichlet(this);
-        IntStream.iterate(0, i -> i < quotients.length, i -> i + 1)
-                 .parallel()
-                 .forEach(i -> squareHelper(quotients[i], square));
-        return square;
-    }
-
-    private Void squareHelper(long quotient, Dirichlet square) {
-        long quotientSqrt = (long) Math.sqrt(quotient);
-        long value = -this.get(quotientSqrt) * this.get(quotientSqrt);
-        for (int d = 1; d <= quotientSqrt; d++)
-            value += 2 * (this.get(d) - this.get(d - 1)) * this.get(quotient / d);
-        square.put(quotient, value);
-        return null;
+        return multiply(this, null);
     }
 
     public Dirichlet squareMod(long mod) {
-        Dirichlet square = new Dirichlet(this);
-        IntStream.iterate(0, i -> i < quotients.length, i -> i + 1)
-                 .parallel()
-                 .forEach(i -> squareModHelper(quotients[i], square, mod));
-        return square;
+        return squareMod(Modulus.of(mod));
     }
 
-    private void squareModHelper(long quotient, Dirichlet square, long mod) {
-        long quotientSqrt = (long) Math.sqrt(quotient);
-        long value = -this.get(quotientSqrt) * this.get(quotientSqrt) % mod;
-        for (int d = 1; d <= quotientSqrt; d++)
-            value = (value + 2 * (this.get(d) - this.get(d - 1)) * this.get(quotient / d)) % mod;
-        square.put(quotient, Math.floorMod(value, mod));
+    public Dirichlet squareMod(Modulus modulus) {
+        return multiply(this, modulus);
     }
 
     public Dirichlet multiply(Dirichlet multiplyWith) {
-        Dirichlet product = new Dirichlet(this);
-        IntStream.iterate(0, i -> i < quotients.length, i -> i + 1)
-                 .parallel()
-                 .forEach(i -> multiplyHelper(quotients[i], product, multiplyWith));
-        return product;
+        return multiply(multiplyWith, null);
     }
 
+    public Dirichlet multiplyMod(Dirichlet multiplyWith, long mod) {
+        return multiplyMod(multiplyWith, Modulus.of(mod));
+    }
+
+    public Dirichlet multiplyMod(Dirichlet multiplyWith, Modulus modulus) {
+        return multiply(multiplyWith, modulus);
+    }
+
+    //multiply picks the O(n^(2/3)) algorithm by itself, these are kept for existing callers
     public Dirichlet multiplyTwo(Dirichlet multiplyWith) {
-        Dirichlet product = new Dirichlet(this);
-        long breakPoint = largestQuotientAtMost((long) Math.pow(upperbound, 2.0/3));
-        for (int i = 1; quotients[i] <= breakPoint; i++) {
-            for (int j = 1; quotients[j] <= breakPoint / quotients[i]; j++)
-                product.add(quotients[i] * quotients[j], (this.values[i] - this.values[i - 1]) * (multiplyWith.values[j] - multiplyWith.values[j - 1]));
-            product.values[i] = product.values[i] + product.values[i - 1];
-        }
-        for (int i = quotients.length - 1; quotients[i] > breakPoint; i--)
-            multiplyHelper(quotients[i], product, multiplyWith);
-        return product;
+        return multiply(multiplyWith, null);
     }
 
     public Dirichlet multiplyModTwo(Dirichlet multiplyWith, long mod) {
-        Dirichlet product = new Dirichlet(this);
-        long breakPoint = largestQuotientAtMost((long) Math.pow(upperbound, 2.0/3));
-        for (int i = 1; quotients[i] <= breakPoint; i++) {
-            for (int j = 1; quotients[j] <= breakPoint / quotients[i]; j++)
-                product.addMod(quotients[i] * quotients[j], (this.values[i] - this.values[i - 1]) * (multiplyWith.values[j] - multiplyWith.values[j - 1]), mod);
-            product.values[i] = product.values[i] + product.values[i - 1];
-        }
-        for (int i = quotients.length - 1; quotients[i] > breakPoint; i--)
-            multiplyModHelper(quotients[i], product, multiplyWith, mod);
-        return product;
+        return multiplyMod(multiplyWith, mod);
     }
 
-    private void multiplyHelper(long quotient, Dirichlet product, Dirichlet multiplyWith) {
-        long quotientSqrt = (long) Math.sqrt(quotient);
-        long value = -this.get(quotientSqrt) * multiplyWith.get(quotientSqrt);
-        for (int i = 1; i <= quotientSqrt; i++)
-            value += (this.get(i) - this.get(i - 1)) * multiplyWith.get(quotient / i)
-                     + this.get(quotient / i) * (multiplyWith.get(i) - multiplyWith.get(i - 1));
-        product.put(quotient, value);
+    //a copy with every value reduced to [0, mod)
+    private Dirichlet reduced(Modulus modulus) {
+        Dirichlet reduced = new Dirichlet(this);
+        for (int i = 0; i < values.length; i++)
+            reduced.values[i] = modulus.reduce(values[i]);
+        return reduced;
     }
 
-    public Dirichlet multiplyMod(Dirichlet multiplyWith, long mod) {
+    //Above denseBreakpoint the quotients up to breakPoint are a dense prefix: every pair of blocks (i, j), block i = (q_{i-1}, q_i],
+    //with q_i * q_j <= breakPoint adds f(block i) g(block j) at the smallest quotient >= q_i * q_j, followed by prefix sums.
+    //The pairs are split by their target index, so the chunks write disjoint ranges and run in parallel.
+    //Every other quotient v is a hyperbola sum over a <= sqrt(v), independent of all others, on the common pool.
+    //All indices come from direct arithmetic, see multiplyDenseChunk and hyperbola. Without a modulus the values wrap modulo 2^64,
+    //with one both factors are reduced once and the sums of products are accumulated lazily.
+    private Dirichlet multiply(Dirichlet multiplyWith, Modulus modulus) {
+        return multiply(multiplyWith, modulus, denseBreakpoint);
+    }
+
+    //the dense prefix is used from denseFrom on, tests lower it to reach that path with small upperbounds
+    Dirichlet multiply(Dirichlet multiplyWith, Modulus modulus, long denseFrom) {
+        long[] f = modulus == null ? values : reduced(modulus).values;
+        long[] g = multiplyWith == this ? f : modulus == null ? multiplyWith.values : multiplyWith.reduced(modulus).values;
         Dirichlet product = new Dirichlet(this);
-        IntStream.iterate(0, i -> i < quotients.length, i -> i + 1)
+        int denseEnd = upperbound < denseFrom ? 0 : quotientToIndex(breakPoint);
+        if (denseEnd > 0) {
+            //the stream runs in the pool of the caller if there is one, so the chunks follow its parallelism
+            int parallelism = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+                              : ForkJoinPool.getCommonPoolParallelism();
+            int chunks = Math.min(denseEnd, 16 * parallelism);
+            IntStream.range(0, chunks)
+                     .parallel()
+                     .forEach(c -> multiplyDenseChunk(f, g, product.values, 1 + (int) ((long) denseEnd * c / chunks),
+                                                      1 + (int) ((long) denseEnd * (c + 1) / chunks), modulus));
+            for (int i = 1; i <= denseEnd; i++)
+                product.values[i] = modulus == null ? product.values[i] + product.values[i - 1]
+                                    : modulus.add(modulus.finish(product.values[i]), product.values[i - 1]);
+        }
+        IntStream.range(denseEnd + 1, quotients.length)
                  .parallel()
-                 .forEach(i -> multiplyModHelper(quotients[i], product, multiplyWith, mod));
+                 .forEach(k -> product.values[k] = hyperbola(k, f, g, modulus));
         return product;
     }
 
-    private void multiplyModHelper(long quotient, Dirichlet multiplyWith, Dirichlet product, long mod) {
-        long quotientSqrt = (long) Math.sqrt(quotient);
-        long value = -this.get(quotientSqrt) * multiplyWith.get(quotientSqrt) % mod;
-        for (int i = 1; i <= quotientSqrt; i++)
-            value = (value + (this.get(i) - this.get(i - 1)) * multiplyWith.get(quotient / i)
-                     + this.get(quotient / i) * (multiplyWith.get(i) - multiplyWith.get(i - 1))) % mod;
-        product.put(quotient, Math.floorMod(value, mod));
+    //adds the pairs of blocks whose target index lies in [from, to). Each pair is visited once from its smaller block i, whose
+    //quotient is at most sqrt(q_{to - 1}), and adds f(i) g(j) and f(j) g(i), so a chunk does not walk every block below it.
+    //For a unit block i <= sqrt and a large block j = n / d the pair counts for n / e exactly when e <= d / i, so the target
+    //is the index of n / (d / i).
+    private void multiplyDenseChunk(long[] f, long[] g, long[] product, int from, int to, Modulus modulus) {
+        int length = quotients.length;
+        long below = quotients[from - 1];
+        for (int i = 1; i <= upperboundSqrt && (long) i * i <= quotients[to - 1]; i++) {
+            long blockFI = modulus == null ? f[i] - f[i - 1] : modulus.subtract(f[i], f[i - 1]);
+            long blockGI = modulus == null ? g[i] - g[i - 1] : modulus.subtract(g[i], g[i - 1]);
+            long upperboundOverI = upperbound / i;
+            for (int j = Math.max(i, quotientToIndex(below / i + 1)); j < length; j++) {
+                int target;
+                if (j <= upperboundSqrt) {
+                    long integer = (long) i * j;
+                    target = integer <= upperboundSqrt ? (int) integer : length - (int) (upperboundOverI / j);
+                } else
+                    target = length - (length - j) / i;
+                if (target >= to)
+                    break;
+                if (modulus == null) {
+                    long blockFJ = f[j] - f[j - 1], blockGJ = g[j] - g[j - 1];
+                    product[target] += j == i ? blockFI * blockGI : blockFI * blockGJ + blockFJ * blockGI;
+                } else {
+                    product[target] = modulus.accumulate(product[target], blockFI, modulus.subtract(g[j], g[j - 1]));
+                    if (j != i)
+                        product[target] = modulus.accumulate(product[target], modulus.subtract(f[j], f[j - 1]), blockGI);
+                }
+            }
+        }
+    }
+
+    //F * G at the quotient with the given index, sum_{a <= s} f(a) G(v / a) + g(a) F(v / a) - F(s) G(s) with s = sqrt(v)
+    private long hyperbola(int index, long[] f, long[] g, Modulus modulus) {
+        boolean square = f == g;
+        boolean small = index <= upperboundSqrt;
+        long d = quotients.length - index;
+        int quotientSqrt = (int) Math.sqrt(quotients[index]);
+        if (modulus == null) {
+            long value = -f[quotientSqrt] * g[quotientSqrt];
+            for (int a = 1; a <= quotientSqrt; a++) {
+                int other = small ? index / a : largeQuotientIndex(d, a);
+                value += square ? 2 * (f[a] - f[a - 1]) * f[other] : (f[a] - f[a - 1]) * g[other] + (g[a] - g[a - 1]) * f[other];
+            }
+            return value;
+        }
+        long value = 0;
+        for (int a = 1; a <= quotientSqrt; a++) {
+            int other = small ? index / a : largeQuotientIndex(d, a);
+            long blockF = modulus.subtract(f[a], f[a - 1]);
+            if (square)
+                value = modulus.accumulate(value, modulus.add(blockF, blockF), f[other]);
+            else
+                value = modulus.accumulate(modulus.accumulate(value, blockF, g[other]), modulus.subtract(g[a], g[a - 1]), f[other]);
+        }
+        return modulus.subtract(modulus.finish(value), modulus.multiply(f[quotientSqrt], g[quotientSqrt]));
+    }
+
+    //index of upperbound / (d * a) for the large quotient upperbound / d, without quotientToIndex
+    private int largeQuotientIndex(long d, long a) {
+        long divisor = d * a;
+        return divisor < quotients.length - upperboundSqrt ? (int) (quotients.length - divisor) : (int) (upperbound / divisor);
+    }
+
+    //the sieve is serial and needs a division per pair, so it stops below breakPoint to balance it against the parallel sweep
+    private long divideSplit() {
+        return largestQuotientAtMost(Math.max(breakPoint / 4, upperboundSqrt));
+    }
+
+    //h with divideBy * h = this. Below divideSplit() the block values of h are sieved in ascending order like in multiplyTwo,
+    //above it H(v) = (F(v) - sum_{2 <= a <= s} g(a) H(v / a) - sum_{b <= s} h(b) G(v / b) + G(s) H(s)) / g(1) with s = sqrt(v),
+    //which only needs H at quotients <= v / 2, so every range [V, 2V) of large quotients is done in parallel. O(n^(2/3)) in total.
+    public Dirichlet divide(Dirichlet divideBy) {
+        long first = divideBy.values[1];
+        if (first != 1 && first != -1)
+            throw new ArithmeticException("Only divisors with g(1) = 1 or g(1) = -1 can be divided by over the integers.");
+        Dirichlet quotient = new Dirichlet(this);
+        long split = divideSplit();
+        long[] sieve = new long[quotients.length];
+        int i = 1;
+        for (; i < quotients.length && quotients[i] <= split; i++) {
+            long block = (values[i] - values[i - 1] - sieve[i]) * first;
+            quotient.values[i] = quotient.values[i - 1] + block;
+            for (int j = 2; j < quotients.length && quotients[j] <= split / quotients[i]; j++)
+                sieve[quotientToIndex(quotients[i] * quotients[j])] += (divideBy.values[j] - divideBy.values[j - 1]) * block;
+        }
+        for (int start = i; start < quotients.length; ) {
+            int end = start;
+            while (end < quotients.length && quotients[end] < 2 * quotients[start])
+                end++;
+            IntStream.range(start, end)
+                     .parallel()
+                     .forEach(k -> divideHelper(k, quotient, divideBy, first));
+            start = end;
+        }
+        return quotient;
+    }
+
+    private void divideHelper(int index, Dirichlet result, Dirichlet divideBy, long first) {
+        long[] resultValues = result.values;
+        long[] divideByValues = divideBy.values;
+        long d = quotients.length - index;
+        int quotientSqrt = (int) Math.sqrt(quotients[index]);
+        long value = divideByValues[quotientSqrt] * resultValues[quotientSqrt];
+        for (int a = 2; a <= quotientSqrt; a++)
+            value -= (divideByValues[a] - divideByValues[a - 1]) * resultValues[largeQuotientIndex(d, a)];
+        for (int b = 1; b <= quotientSqrt; b++)
+            value -= (resultValues[b] - resultValues[b - 1]) * divideByValues[largeQuotientIndex(d, b)];
+        resultValues[index] = (values[index] + value) * first;
+    }
+
+    //h with divideBy * h = this modulo mod, g(1) has to be invertible modulo mod
+    public Dirichlet divideMod(Dirichlet divideBy, long mod) {
+        return divideMod(divideBy, Modulus.of(mod));
+    }
+
+    public Dirichlet divideMod(Dirichlet divideBy, Modulus modulus) {
+        long mod = modulus.mod;
+        long first = modulus.reduce(divideBy.values[1]);
+        if (BigInteger.valueOf(first).gcd(BigInteger.valueOf(mod)).compareTo(BigInteger.ONE) != 0)
+            throw new ArithmeticException("g(1) is not invertible modulo " + mod + ".");
+        long firstInverse = BigInteger.valueOf(first).modInverse(BigInteger.valueOf(mod)).longValue();
+        long[] f = reduced(modulus).values;
+        long[] g = divideBy.reduced(modulus).values;
+        Dirichlet quotient = new Dirichlet(this);
+        long split = divideSplit();
+        long[] sieve = new long[quotients.length];
+        int i = 1;
+        for (; i < quotients.length && quotients[i] <= split; i++) {
+            long block = modulus.multiply(modulus.subtract(modulus.subtract(f[i], f[i - 1]), modulus.finish(sieve[i])), firstInverse);
+            quotient.values[i] = modulus.add(quotient.values[i - 1], block);
+            for (int j = 2; j < quotients.length && quotients[j] <= split / quotients[i]; j++) {
+                int index = quotientToIndex(quotients[i] * quotients[j]);
+                sieve[index] = modulus.accumulate(sieve[index], modulus.subtract(g[j], g[j - 1]), block);
+            }
+        }
+        for (int start = i; start < quotients.length; ) {
+            int end = start;
+            while (end < quotients.length && quotients[end] < 2 * quotients[start])
+                end++;
+            IntStream.range(start, end)
+                     .parallel()
+                     .forEach(k -> divideModHelper(k, quotient.values, f, g, firstInverse, modulus));
+            start = end;
+        }
+        return quotient;
+    }
+
+    private void divideModHelper(int index, long[] result, long[] f, long[] g, long firstInverse, Modulus modulus) {
+        long d = quotients.length - index;
+        int quotientSqrt = (int) Math.sqrt(quotients[index]);
+        long value = 0;
+        for (int a = 2; a <= quotientSqrt; a++)
+            value = modulus.accumulate(value, modulus.subtract(g[a], g[a - 1]), result[largeQuotientIndex(d, a)]);
+        for (int b = 1; b <= quotientSqrt; b++)
+            value = modulus.accumulate(value, modulus.subtract(result[b], result[b - 1]), g[largeQuotientIndex(d, b)]);
+        long known = modulus.add(f[index], modulus.multiply(g[quotientSqrt], result[quotientSqrt]));
+        result[index] = modulus.multiply(modulus.subtract(known, modulus.finish(value)), firstInverse);
+    }
+
+    public Dirichlet inverse() {
+        return Dirichlet.one(upperbound).divide(this);
+    }
+
+    public Dirichlet inverseMod(long mod) {
+        return Dirichlet.one(upperbound).divideMod(this, mod);
     }
 
     public static Dirichlet one(long upperbound) {
         return new Dirichlet(upperbound, i -> 1);
     }
 
+    //f(1) = 1 uses binomialPow unless binary exponentiation needs fewer products, so the cost is at most about log2(n) products
+    //whatever the exponent. Negative exponents need f(1) = 1.
     public Dirichlet pow(long exponent) {
+        if (values[1] == 1 && seriesIsCheaper(exponent))
+            return binomialPow(exponent, null);
         if (exponent < 1) {
             if (exponent < 0)
-                return null;
+                throw new IllegalArgumentException("Negative exponents need f(1) = 1.");
             return Dirichlet.one(upperbound);
         }
         Dirichlet base = this;
@@ -262,27 +460,225 @@ public class Dirichlet {
     }
 
     public Dirichlet powMod(long exponent, long mod) {
+        return powMod(exponent, Modulus.of(mod));
+    }
+
+    public Dirichlet powMod(long exponent, Modulus modulus) {
+        if (modulus.reduce(values[1]) == modulus.reduce(1) && seriesIsCheaper(exponent))
+            return binomialPow(exponent, modulus);
         if (exponent < 1) {
             if (exponent < 0)
-                return null;
+                throw new IllegalArgumentException("Negative exponents need f(1) = 1 modulo mod.");
             return Dirichlet.one(upperbound);
         }
         Dirichlet base = this;
         while (exponent % 2 == 0) {
             exponent /= 2;
-            base = base.squareMod(mod);
+            base = base.squareMod(modulus);
         }
         Dirichlet result = base;
         exponent /= 2;
         while (exponent > 0) {
-            base = base.squareMod(mod);
+            base = base.squareMod(modulus);
             if (exponent % 2 == 1)
-                result = result.multiplyMod(base, mod);
+                result = result.multiplyMod(base, modulus);
             exponent /= 2;
         }
         return result;
     }
 
+    //For f(1) = 1 the series below are sums over powers of h = f - 1. h^j vanishes below 2^j, so about log2(n) products of
+    //O(n^(2/3)) each give pow, root, log and exp whatever the exponent. Without a modulus they compute modulo 2^64, i.e. with wrapping longs.
+
+    //the series needs a product per power of h up to min(exponent, seriesLength() - 1), binary exponentiation one per bit
+    //and one per further set bit
+    private boolean seriesIsCheaper(long exponent) {
+        if (exponent < 0)
+            return true;
+        int binaryProducts = exponent == 0 ? 0 : 63 - Long.numberOfLeadingZeros(exponent) + Long.bitCount(exponent) - 1;
+        return Math.min(exponent, seriesLength() - 1) - 1 < binaryProducts;
+    }
+
+    //sum_j C(exponent, j) h^j with the exact binomials reduced modulo mod, so any exponent and any modulus work
+    private Dirichlet binomialPow(long exponent, Modulus modulus) {
+        long[] coefficients = new long[seriesLength()];
+        BigInteger binomial = BigInteger.ONE;
+        for (int j = 0; j < coefficients.length; j++) {
+            coefficients[j] = modulus == null ? binomial.longValue() : binomial.mod(BigInteger.valueOf(modulus.mod)).longValue();
+            binomial = binomial.multiply(BigInteger.valueOf(exponent).subtract(BigInteger.valueOf(j))).divide(BigInteger.valueOf(j + 1));
+        }
+        return series(minusOne(modulus), coefficients, modulus);
+    }
+
+    //f^(numerator / denominator) modulo a prime mod, with the exponent taken modulo mod. Requires f(1) = 1.
+    public Dirichlet powMod(long numerator, long denominator, long mod) {
+        Modulus modulus = seriesModulus(mod);
+        if (modulus.reduce(values[1]) != 1)
+            throw new IllegalArgumentException("f(1) must be 1.");
+        long exponent = modulus.multiply(modulus.reduce(numerator), inverse(denominator, mod));
+        long[] coefficients = new long[seriesLength()];
+        coefficients[0] = 1;
+        for (int j = 1; j < coefficients.length; j++)
+            coefficients[j] = modulus.multiply(modulus.multiply(coefficients[j - 1], modulus.reduce(exponent - j + 1)), inverse(j, mod));
+        return series(minusOne(modulus), coefficients, modulus);
+    }
+
+    //the k-th root with g(1) = 1 modulo a prime mod
+    public Dirichlet rootMod(long k, long mod) {
+        return powMod(1, k, mod);
+    }
+
+    //the exact k-th root with g(1) = 1, valid if it is integer valued and all its sums fit into a long.
+    //Computed modulo the three primes of FFT.multiplyExact and combined with Garner's algorithm.
+    public Dirichlet root(long k) {
+        if (values[1] != 1)
+            throw new IllegalArgumentException("f(1) must be 1.");
+        long[][] residues = Arrays.stream(FFT.exactPrimes())
+                                  .mapToObj(prime -> rootMod(k, prime).values)
+                                  .toArray(long[][]::new);
+        Dirichlet root = new Dirichlet(this);
+        root.values = FFT.combineExact(residues);
+        return root;
+    }
+
+    //log f = sum_{j >= 1} (-1)^(j + 1) h^j / j modulo a prime mod, requires f(1) = 1
+    public Dirichlet logMod(long mod) {
+        Modulus modulus = seriesModulus(mod);
+        if (modulus.reduce(values[1]) != 1)
+            throw new IllegalArgumentException("f(1) must be 1.");
+        long[] coefficients = new long[seriesLength()];
+        for (int j = 1; j < coefficients.length; j++)
+            coefficients[j] = j % 2 == 1 ? inverse(j, mod) : mod - inverse(j, mod);
+        return series(minusOne(modulus), coefficients, modulus);
+    }
+
+    //exp f = sum_j f^j / j! modulo a prime mod, requires f(1) = 0
+    public Dirichlet expMod(long mod) {
+        Modulus modulus = seriesModulus(mod);
+        if (modulus.reduce(values[1]) != 0)
+            throw new IllegalArgumentException("f(1) must be 0.");
+        long[] coefficients = new long[seriesLength()];
+        coefficients[0] = 1;
+        for (int j = 1; j < coefficients.length; j++)
+            coefficients[j] = modulus.multiply(coefficients[j - 1], inverse(j, mod));
+        return series(reduced(modulus), coefficients, modulus);
+    }
+
+    //The real valued series below work on doubles: the results are the summatory values of log f, exp f and f^exponent at every
+    //quotient, in the order of quotients. Their products use the hyperbola at every quotient, O(n^(3/4)) each, and they are only
+    //as accurate as double precision allows. For integer valued results use root, powMod, logMod and expMod.
+
+    //log f = sum_{j >= 1} (-1)^(j + 1) h^j / j, requires f(1) = 1
+    public double[] log() {
+        if (values[1] != 1)
+            throw new IllegalArgumentException("f(1) must be 1.");
+        double[] coefficients = new double[seriesLength()];
+        for (int j = 1; j < coefficients.length; j++)
+            coefficients[j] = (j % 2 == 1 ? 1.0 : -1.0) / j;
+        return series(minusOne(null).values, coefficients);
+    }
+
+    //exp f = sum_j f^j / j!, requires f(1) = 0
+    public double[] exp() {
+        if (values[1] != 0)
+            throw new IllegalArgumentException("f(1) must be 0.");
+        double[] coefficients = new double[seriesLength()];
+        coefficients[0] = 1;
+        for (int j = 1; j < coefficients.length; j++)
+            coefficients[j] = coefficients[j - 1] / j;
+        return series(values, coefficients);
+    }
+
+    //f^exponent = sum_j C(exponent, j) h^j for any real exponent, requires f(1) = 1
+    public double[] powReal(double exponent) {
+        if (values[1] != 1)
+            throw new IllegalArgumentException("f(1) must be 1.");
+        double[] coefficients = new double[seriesLength()];
+        coefficients[0] = 1;
+        for (int j = 1; j < coefficients.length; j++)
+            coefficients[j] = coefficients[j - 1] * (exponent - j + 1) / j;
+        return series(minusOne(null).values, coefficients);
+    }
+
+    private double[] series(long[] base, double[] coefficients) {
+        double[] power = Arrays.stream(base).asDoubleStream().toArray();
+        double[] sums = new double[values.length];
+        int terms = coefficients.length;
+        while (terms > 0 && coefficients[terms - 1] == 0)
+            terms--;
+        for (int j = 0; j < terms; j++) {
+            if (j > 1)
+                power = multiplyReal(power, base);
+            double coefficient = coefficients[j];
+            for (int i = 1; i < sums.length; i++)
+                sums[i] += j == 0 ? coefficient : coefficient * power[i];
+        }
+        return sums;
+    }
+
+    //the product of the summatory values f and g on the quotients, the hyperbola at every quotient like in multiply
+    private double[] multiplyReal(double[] f, long[] g) {
+        double[] product = new double[values.length];
+        IntStream.range(1, values.length)
+                 .parallel()
+                 .forEach(index -> {
+                     boolean small = index <= upperboundSqrt;
+                     long d = quotients.length - index;
+                     int quotientSqrt = (int) Math.sqrt(quotients[index]);
+                     double value = -f[quotientSqrt] * g[quotientSqrt];
+                     for (int a = 1; a <= quotientSqrt; a++) {
+                         int other = small ? index / a : largeQuotientIndex(d, a);
+                         value += (f[a] - f[a - 1]) * g[other] + (double) (g[a] - g[a - 1]) * f[other];
+                     }
+                     product[index] = value;
+                 });
+        return product;
+    }
+
+    //number of j with 2^j <= upperbound, the powers of a series without constant term beyond that vanish
+    private int seriesLength() {
+        return 64 - Long.numberOfLeadingZeros(upperbound);
+    }
+
+    private Modulus seriesModulus(long mod) {
+        if (mod <= seriesLength() || mod >= 1L << 62 || !BigInteger.valueOf(mod).isProbablePrime(30))
+            throw new IllegalArgumentException("Modulus must be a prime larger than log2(upperbound) and below 2^62.");
+        return Modulus.of(mod);
+    }
+
+    private static long inverse(long value, long mod) {
+        return BigInteger.valueOf(value).modInverse(BigInteger.valueOf(mod)).longValue();
+    }
+
+    //h = f - 1, reduced if there is a modulus
+    private Dirichlet minusOne(Modulus modulus) {
+        Dirichlet shifted = new Dirichlet(this);
+        for (int i = 1; i < values.length; i++)
+            shifted.values[i] = modulus == null ? values[i] - 1 : modulus.subtract(modulus.reduce(values[i]), modulus.reduce(1));
+        return shifted;
+    }
+
+    //sum_j coefficients[j] base^j for a base with base(1) = 0 and values in [0, mod), the powers stop at the last non-zero coefficient
+    private static Dirichlet series(Dirichlet base, long[] coefficients, Modulus modulus) {
+        Dirichlet result = new Dirichlet(base);
+        long[] sums = result.values;
+        Dirichlet power = null;
+        int terms = coefficients.length;
+        while (terms > 0 && coefficients[terms - 1] == 0)
+            terms--;
+        for (int j = 0; j < terms; j++) {
+            power = j == 0 ? null : j == 1 ? base : power.multiply(base, modulus);
+            long coefficient = coefficients[j];
+            if (coefficient == 0)
+                continue;
+            for (int i = 1; i < sums.length; i++) {
+                long term = j == 0 ? coefficient : modulus == null ? coefficient * power.values[i] : modulus.multiply(coefficient, power.values[i]);
+                sums[i] = modulus == null ? sums[i] + term : modulus.add(sums[i], term);
+            }
+        }
+        return result;
+    }
+
     public void map(LongUnaryOperator function) {
         for (int index = values.length - 1; index >= 1; index--)
             values[index] = function.applyAsLong(values[index]);
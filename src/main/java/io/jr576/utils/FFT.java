@@ -1,33 +1,29 @@
 package io.jr576.utils;
 
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 public class FFT {
     final long prime;
     final long primRoot;
     final int order;
-    final long[] rootPowers;
-    private final int recursiveParallelBreakpoint = 1 << 6;
-    private final int useRecursiveAlgorithm = 1 << 10;
+    final Montgomery montgomery; //null when the prime is too large for Montgomery arithmetic
+    private final AtomicReferenceArray<NttPlan> plans = new AtomicReferenceArray<>(Integer.SIZE);
+    private final ThreadLocal<ArrayDeque<long[]>> scratchPool = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final int maxPooledScratch = 4;
     public static final List<Integer> goodPrimes = List.of(469762049, 167772161, 754974721, 377487361, 595591169, 645922817, 880803841, 897581057, 998244353);
 
-    private long[] initializeRootPowers() {
-        long[] rootPowers = new long[order];
-        rootPowers[0] = 1;
-        for (int i = 1; i < order; i++)
-            rootPowers[i] = rootPowers[i - 1] * primRoot % prime;
-        return rootPowers;
-    }
-
     public FFT(int prime, int primRoot, int order) {
         if (Integer.highestOneBit(order) != order)
             throw new IllegalArgumentException("Order must be power of two.");
         this.prime = prime;
         this.primRoot = primRoot;
         this.order = largerTwoPow(order);
-        this.rootPowers = initializeRootPowers();
+        this.montgomery = Montgomery.supports(prime) ? new Montgomery(prime) : null;
     }
 
     public FFT(int prime) {
@@ -41,13 +37,13 @@ public class FFT {
         primRoot = pow(primRoot, oddOrder);
         this.order = maxEvenOrder;
         this.primRoot = primRoot;
-        this.rootPowers = initializeRootPowers();
+        this.montgomery = Montgomery.supports(prime) ? new Montgomery(prime) : null;
     }
 
     public FFT(int prime, int desiredOrder) {
         this.prime = prime;
-        this.order = desiredOrder;
         desiredOrder = largerTwoPow(desiredOrder);
+        this.order = desiredOrder;
         int maxOrder = prime - 1;
         if (maxOrder < desiredOrder)
             throw new IllegalArgumentException("The prime doesn't support order this large.");
@@ -56,7 +52,7 @@ public class FFT {
             primRoot++;
         primRoot = pow(primRoot, maxOrder / desiredOrder);
         this.primRoot = primRoot;
-        this.rootPowers = initializeRootPowers();
+        this.montgomery = Montgomery.supports(prime) ? new Montgomery(prime) : null;
     }
 
     private long pow(long base, long exponent) {
@@ -72,12 +68,12 @@ public class FFT {
 
     private long[] extendAndCopy(long[] arr, int size) {
         long[] newArr = new long[size];
-        System.arraycopy(arr, 0, newArr, 0, arr.length);
+        load(arr, newArr, size);
         return newArr;
     }
 
     //smallest power of two >= n
-    private int largerTwoPow(int n) {
+    static int largerTwoPow(int n) {
         if (Integer.bitCount(n) == 1)
             return n;
         else {
@@ -86,136 +82,140 @@ public class FFT {
         }
     }
 
-    private long[] fftRecursive(long[] pol, int size, int rootIndex) {
+    //plan for transforms of the given power of two size, built once and cached
+    public NttPlan plan(int size) {
+        if (Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Size must be power of two.");
         if (size > order)
             throw new IllegalArgumentException("Size too large.");
-        if (size == 1)
-            return pol;
-        long[] even = new long[size / 2];
-        long[] odd = new long[size / 2];
-        for (int i = 0; i < size / 2; i++) {
-            even[i] = pol[2 * i];
-            odd[i] = pol[2 * i + 1];
-        }
-        if (size > recursiveParallelBreakpoint)
-            Stream.of(even, odd)
-                  .parallel()
-                  .forEach(array -> fftRecursive(array, size / 2, 2 * rootIndex));
-        else {
-            fftRecursive(even, size / 2, 2 * rootIndex);
-            fftRecursive(odd, size / 2, 2 * rootIndex);
-        }
-        for (int k = 0; k < size / 2; k++) {
-            long evenPart = even[k];
-            long oddPart = rootPowers[k * rootIndex] * odd[k] % prime;
-            pol[k] = (evenPart + oddPart) % prime;
-            pol[k + size / 2] = (evenPart + prime - oddPart) % prime;
+        int logSize = Integer.numberOfTrailingZeros(size);
+        NttPlan plan = plans.get(logSize);
+        if (plan == null) {
+            plans.compareAndSet(logSize, null, new NttPlan(prime, pow(primRoot, order / size), size, montgomery));
+            plan = plans.get(logSize);
         }
-        return pol;
+        return plan;
     }
 
-    private long[] fftIterative(long[] pol, int size) {
-        if (size > order)
-            throw new IllegalArgumentException("Size too large.");
-        if (size == 1)
-            return pol;
-        bitReverse(pol);
-        for (int twoPow = 2; twoPow <= size; twoPow *= 2) {
-            int twoPowFinal = twoPow;
-            int rootIndexIncrement = rootPowers.length / twoPow;
-            IntStream.range(0, size / twoPowFinal).parallel().forEach(i -> {
-                int k = i * twoPowFinal;
-                for (int j = 0, rootIndex = 0; j < twoPowFinal / 2; j++, rootIndex += rootIndexIncrement) {
-                    long root = rootPowers[rootIndex];
-                    long evenPart = pol[k + j];
-                    long oddPart = root * pol[k + j + twoPowFinal / 2] % prime;
-                    pol[k + j] = (evenPart + oddPart) % prime;
-                    pol[k + j + twoPowFinal / 2] = (evenPart + prime - oddPart) % prime;
-                }
-            });
+    //scratch buffers are taken from and handed back to a per thread pool, so that nested calls
+    //(e.g. a fork join worker helping out while it waits) never share a buffer
+    long[] borrowScratch(int size) {
+        long[] scratch = scratchPool.get().pollFirst();
+        if (scratch == null || scratch.length < size)
+            return new long[size];
+        return scratch;
+    }
+
+    void returnScratch(long[] scratch) {
+        ArrayDeque<long[]> pool = scratchPool.get();
+        if (pool.size() < maxPooledScratch)
+            pool.addFirst(scratch);
+    }
+
+    //copies pol reduced to [0, prime), which the Montgomery butterflies require, with a division only for coefficients outside
+    void load(long[] pol, long[] buffer, int size) {
+        for (int i = 0; i < pol.length; i++) {
+            long coefficient = pol[i];
+            buffer[i] = coefficient >= 0 && coefficient < prime ? coefficient : Math.floorMod(coefficient, prime);
         }
-        return pol;
-    }
-
-    private long[] bitReverse(long[] pol) {
-        int size = pol.length;
-        int shift = 1 + Integer.numberOfLeadingZeros(size);
-        IntStream.range(0, size).parallel().forEach(i -> { //paralell??
-            int j = Integer.reverse(i) >>> shift;
-            if (j > i) {
-                long temp = pol[i];
-                pol[i] = pol[j];
-                pol[j] = temp;
-            }
-        });
-        return pol;
+        Arrays.fill(buffer, pol.length, size, 0);
     }
 
-    private long[] fft(long[] pol, int size) {
-        long[] polToTransform = extendAndCopy(pol, size);
-        if (size < useRecursiveAlgorithm)
-            return fftRecursive(polToTransform, size, order / size);
-        else
-            return fftIterative(polToTransform, size);
+    private void store(long[] buffer, long[] result, int size) {
+        int length = Math.min(size, result.length);
+        System.arraycopy(buffer, 0, result, 0, length);
+        Arrays.fill(result, length, result.length, 0);
     }
 
     public long[] fft(long[] pol) {
         int size = largerTwoPow(pol.length);
-        return fft(pol, size);
+        long[] polTransformed = extendAndCopy(pol, size);
+        plan(size).forward(polTransformed);
+        return polTransformed;
     }
 
-    private long[] fftInverse(long[] pol) {
-        long[] polTransform = fft(pol);
-        long[] fftInverse = new long[polTransform.length];
-        long sizeInverse = pow(polTransform.length, prime - 2);
-        fftInverse[0] = polTransform[0] * sizeInverse % prime;
-        for (int i = 1; i < polTransform.length; i++)
-            fftInverse[i] = polTransform[polTransform.length - i] * sizeInverse % prime;
-        return fftInverse;
+    public long[] multiply(long[] polA, long[] polB) {
+        long[] product = new long[largerTwoPow(polA.length + polB.length - 1)];
+        multiply(polA, polB, product);
+        return product;
     }
 
-    public long[] multiply(long[] polA, long[] polB) {
+    //writes the first product.length coefficients of polA * polB into product
+    public void multiply(long[] polA, long[] polB, long[] product) {
         int size = largerTwoPow(polA.length + polB.length - 1);
-        long[] polATransformed = fft(extendAndCopy(polA, size), size);
-        long[] polBTransformed = fft(extendAndCopy(polB, size), size);
-        long[] product = new long[size];
-        for (int i = 0; i < size; i++)
-            product[i] = polATransformed[i] * polBTransformed[i] % prime;
-        return fftInverse(product);
+        NttPlan plan = plan(size);
+        long[] bufferA = product.length >= size ? product : borrowScratch(size);
+        long[] bufferB = borrowScratch(size);
+        load(polA, bufferA, size);
+        load(polB, bufferB, size);
+        plan.forwardBitReversed(bufferA);
+        plan.forwardBitReversed(bufferB);
+        plan.pointwiseMultiply(bufferA, bufferB);
+        plan.inverseProducts(bufferA);
+        returnScratch(bufferB);
+        if (bufferA != product) {
+            store(bufferA, product, size);
+            returnScratch(bufferA);
+        } else
+            Arrays.fill(product, size, product.length, 0);
+    }
+
+    //forward transform of pol, sized for products with polynomials of up to maxOtherLength coefficients
+    public TransformedPolynomial transform(long[] pol, int maxOtherLength) {
+        return new TransformedPolynomial(this, pol, maxOtherLength);
+    }
+
+    //kernel * pol for every pol, the kernel is transformed once and the products are spread over the common pool
+    public List<long[]> multiplyAll(long[] kernel, List<long[]> pols) {
+        int maxLength = pols.stream().mapToInt(pol -> pol.length).max().orElse(1);
+        TransformedPolynomial transformedKernel = transform(kernel, maxLength);
+        return pols.parallelStream()
+                   .map(transformedKernel::multiply)
+                   .toList();
     }
 
     public long[] multiplyCutoff(long[] polA, long[] polB, int cutoff) {
-        long[] product = multiply(polA, polB);
         long[] productCutoff = new long[cutoff + 1];
-        System.arraycopy(product, 0, productCutoff, 0, cutoff + 1);
+        multiply(polA, polB, productCutoff);
         return productCutoff;
     }
 
     public long[] square(long[] pol) {
+        long[] square = new long[largerTwoPow(2 * pol.length - 1)];
+        square(pol, square);
+        return square;
+    }
+
+    //writes the first square.length coefficients of pol^2 into square
+    public void square(long[] pol, long[] square) {
         int size = largerTwoPow(2 * pol.length - 1);
-        long[] polTransformed = fft(pol, size);
-        long[] square = new long[size];
-        for (int i = 0; i < size; i++)
-            square[i] = polTransformed[i] * polTransformed[i] % prime;
-        return fftInverse(square);
+        NttPlan plan = plan(size);
+        long[] buffer = square.length >= size ? square : borrowScratch(size);
+        load(pol, buffer, size);
+        plan.forwardBitReversed(buffer);
+        plan.pointwiseSquare(buffer);
+        plan.inverseProducts(buffer);
+        if (buffer != square) {
+            store(buffer, square, size);
+            returnScratch(buffer);
+        } else
+            Arrays.fill(square, size, square.length, 0);
     }
 
     public long[] squareCutoff(long[] pol, int cutoff) {
-        long[] square = square(pol);
-        if (square.length == cutoff + 1)
-            return square;
         long[] squareCutoff = new long[cutoff + 1];
-        System.arraycopy(square, 0, squareCutoff, 0, cutoff + 1);
+        square(pol, squareCutoff);
         return squareCutoff;
     }
 
     public long[] pow(long[] pol, int exponent) {
         int size = largerTwoPow(exponent * (pol.length - 1) + 1);
-        long[] polTransformed = fft(pol, size);
-        long[] power = new long[size];
-        for (int i = 0; i < size; i++)
-            power[i] = pow(polTransformed[i], exponent);
-        return fftInverse(power);
+        NttPlan plan = plan(size);
+        long[] power = extendAndCopy(pol, size);
+        plan.forwardBitReversed(power);
+        plan.pointwisePow(power, exponent);
+        plan.inverseProducts(power);
+        return power;
     }
 
 
@@ -237,11 +237,124 @@ public class FFT {
         return power;
     }
 
+    //pol evaluated at every point, see SubproductTree to reuse the tree for several polynomials
+    public long[] evaluate(long[] pol, long[] points) {
+        return new SubproductTree(this, points).evaluate(pol);
+    }
+
+    //the polynomial of degree < xs.length through the points (xs[i], ys[i]), the xs have to be distinct
+    public long[] interpolate(long[] xs, long[] ys) {
+        return new SubproductTree(this, xs).interpolate(ys);
+    }
+
+    //the three NTT primes used for convolutions modulo an arbitrary modulus, combined with Garner's algorithm
+    private static final class ThreePrimes {
+        static final long first = 469762049;
+        static final long second = 167772161;
+        static final long third = 754974721;
+        static final FFT[] transforms = {new FFT((int) first), new FFT((int) second), new FFT((int) third)};
+        static final long firstInverse = inverse(first, second); //first^-1 mod second
+        static final long firstSecondInverse = inverse(first * second % third, third); //(first * second)^-1 mod third
+        static final double product = (double) first * second * third;
+
+        private static long inverse(long value, long mod) {
+            return BigInteger.valueOf(value).modInverse(BigInteger.valueOf(mod)).longValue();
+        }
+    }
+
+    private static long[] reduceCoefficients(long[] pol, long mod) {
+        long[] reduced = new long[pol.length];
+        for (int i = 0; i < pol.length; i++)
+            reduced[i] = Math.floorMod(pol[i], mod);
+        return reduced;
+    }
+
+    //products modulo each of the three primes, computed concurrently. polB == null means squaring polA,
+    //in which case every prime only needs one forward transform
+    private static long[][] convolveThreePrimes(long[] polA, long[] polB) {
+        int length = polA.length + (polB == null ? polA.length : polB.length) - 1;
+        return IntStream.range(0, 3)
+                        .parallel()
+                        .mapToObj(i -> {
+                            FFT fft = ThreePrimes.transforms[i];
+                            long[] product = new long[length];
+                            if (polB == null)
+                                fft.square(reduceCoefficients(polA, fft.prime), product);
+                            else
+                                fft.multiply(reduceCoefficients(polA, fft.prime), reduceCoefficients(polB, fft.prime), product);
+                            return product;
+                        })
+                        .toArray(long[][]::new);
+    }
+
+    private static void checkAnyMod(int shorterLength, long anyMod) {
+        if (anyMod < 1 || anyMod > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Modulus must be between 1 and 2^31 - 1.");
+        if ((double) shorterLength * (anyMod - 1) * (anyMod - 1) >= ThreePrimes.product)
+            throw new IllegalArgumentException("Polynomials too long for this modulus.");
+    }
+
+    //combines the residues into the product modulo mod, mod < 2^31
+    private static long[] combineMod(long[][] residues, long mod) {
+        long firstSecond = ThreePrimes.first * ThreePrimes.second % mod;
+        long[] product = new long[residues[0].length];
+        for (int i = 0; i < product.length; i++) {
+            long firstDigit = residues[0][i];
+            long secondDigit = Math.floorMod(residues[1][i] - firstDigit, ThreePrimes.second) * ThreePrimes.firstInverse % ThreePrimes.second;
+            long thirdDigit = Math.floorMod(residues[2][i] - (firstDigit + ThreePrimes.first * secondDigit) % ThreePrimes.third, ThreePrimes.third)
+                              * ThreePrimes.firstSecondInverse % ThreePrimes.third;
+            product[i] = (firstDigit + ThreePrimes.first * secondDigit % mod + firstSecond * thirdDigit) % mod;
+        }
+        return product;
+    }
+
+    //the primes behind multiplyExact, for results computed modulo each of them and combined with combineExact
+    static long[] exactPrimes() {
+        return new long[]{ThreePrimes.first, ThreePrimes.second, ThreePrimes.third};
+    }
+
+    //combines the residues into the exact signed product, assuming every coefficient fits into a long
+    static long[] combineExact(long[][] residues) {
+        long firstSecond = ThreePrimes.first * ThreePrimes.second;
+        long[] product = new long[residues[0].length];
+        for (int i = 0; i < product.length; i++) {
+            long firstDigit = residues[0][i];
+            long secondDigit = Math.floorMod(residues[1][i] - firstDigit, ThreePrimes.second) * ThreePrimes.firstInverse % ThreePrimes.second;
+            long thirdDigit = Math.floorMod(residues[2][i] - (firstDigit + ThreePrimes.first * secondDigit) % ThreePrimes.third, ThreePrimes.third)
+                              * ThreePrimes.firstSecondInverse % ThreePrimes.third;
+            //computed modulo 2^64, values in the upper half of [0, first * second * third) are negative
+            product[i] = firstDigit + ThreePrimes.first * secondDigit + firstSecond * thirdDigit;
+            if (2 * thirdDigit >= ThreePrimes.third)
+                product[i] -= firstSecond * ThreePrimes.third;
+        }
+        return product;
+    }
+
+    //polA * polB modulo anyMod < 2^31, of length polA.length + polB.length - 1
+    public static long[] multiplyMod(long[] polA, long[] polB, long anyMod) {
+        checkAnyMod(Math.min(polA.length, polB.length), anyMod);
+        return combineMod(convolveThreePrimes(reduceCoefficients(polA, anyMod), reduceCoefficients(polB, anyMod)), anyMod);
+    }
+
+    public static long[] squareMod(long[] pol, long anyMod) {
+        checkAnyMod(pol.length, anyMod);
+        return combineMod(convolveThreePrimes(reduceCoefficients(pol, anyMod), null), anyMod);
+    }
+
+    //exact integer product, valid as long as every coefficient of the result fits into a long
+    public static long[] multiplyExact(long[] polA, long[] polB) {
+        return combineExact(convolveThreePrimes(polA, polB));
+    }
+
+    public static long[] squareExact(long[] pol) {
+        return combineExact(convolveThreePrimes(pol, null));
+    }
+
     private long[] transformSlow(long[] pol, int size, int rootIndex) {
         long[] eval = new long[size];
         for (int j = 0; j < size; j++) {
             long result = 0;
-            long root = rootPowers[j * rootIndex];
+            long root = pow(primRoot, (long) j * rootIndex);
             for (int i = pol.length - 1; i >= 0; i--) {
                 result = (result * root + pol[i]) % prime;
             }
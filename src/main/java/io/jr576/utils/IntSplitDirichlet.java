@@ -0,0 +1,50 @@
+package io.jr576.utils;
+
+import java.util.function.LongUnaryOperator;
+
+//AbstractSplitDirichlet with residues modulo mod < 2^31 in int cells, a quarter of the memory of a Dirichlet.
+//Every value stored is reduced to [0, mod), the getters widen it back to a long.
+public class IntSplitDirichlet extends AbstractSplitDirichlet {
+    public final long mod;
+    public final int[] small;
+    public final int[] large;
+
+    public IntSplitDirichlet(long upperbound, long mod) {
+        super(upperbound);
+        if (mod < 1 || mod > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Modulus must be in [1, 2^31).");
+        this.mod = mod;
+        this.small = new int[upperboundSqrt + 1];
+        this.large = new int[largeCount + 1];
+    }
+
+    public IntSplitDirichlet(long upperbound, LongUnaryOperator function, long mod) {
+        this(upperbound, mod);
+        fill(function);
+    }
+
+    public IntSplitDirichlet(Dirichlet dirichlet, long mod) {
+        this(dirichlet.upperbound, mod);
+        fill(dirichlet);
+    }
+
+    @Override
+    public long getSmall(int q) {
+        return small[q];
+    }
+
+    @Override
+    public long getLarge(int d) {
+        return large[d];
+    }
+
+    @Override
+    protected void setSmall(int q, long value) {
+        small[q] = (int) Math.floorMod(value, mod);
+    }
+
+    @Override
+    protected void setLarge(int d, long value) {
+        large[d] = (int) Math.floorMod(value, mod);
+    }
+}
@@ -0,0 +1,129 @@
+package io.jr576.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Read only view of a Dirichlet checkpoint written by Dirichlet.save, mapped instead of read so a table is usable right after open.
+//The file is little endian: the magic "DIRICHL1", upperbound, a flags word with bit 0 = removeOne, then the raw values.
+//The quotients are not stored, quotient(index) computes them and quotients() regenerates the array on first use.
+//The values are mapped in chunks of 2^27 longs (1 GiB) since a single mapping is limited to 2^31 bytes.
+public class MappedDirichlet implements AutoCloseable {
+    static final long magic = 0x314C484349524944L; //"DIRICHL1"
+    static final int headerSize = 24;
+    private static final int chunkShift = 27;
+    private static final long chunkSize = 1L << chunkShift;
+    public final long upperbound;
+    public final int upperboundSqrt;
+    final boolean removeOne;
+    public final int length;
+    private final FileChannel channel;
+    private final LongBuffer[] chunks;
+    private long[] quotients;
+
+    private MappedDirichlet(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() < headerSize)
+            throw new IOException("Not a Dirichlet checkpoint.");
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            channel.read(header, header.position());
+        header.flip();
+        if (header.getLong() != magic)
+            throw new IOException("Not a Dirichlet checkpoint.");
+        this.upperbound = header.getLong();
+        this.removeOne = (header.getLong() & 1) == 1;
+        if (upperbound < 1)
+            throw new IOException("Corrupt Dirichlet checkpoint: upperbound " + upperbound + ".");
+        this.upperboundSqrt = (int) Math.sqrt(upperbound);
+        if (removeOne != (upperbound / upperboundSqrt == upperboundSqrt))
+            throw new IOException("Corrupt Dirichlet checkpoint: removeOne does not match the upperbound.");
+        this.length = 2 * upperboundSqrt + (removeOne ? 0 : 1);
+        if (channel.size() != headerSize + 8L * length)
+            throw new IOException("Corrupt Dirichlet checkpoint: expected " + length + " values.");
+        this.chunks = new LongBuffer[(int) ((length + chunkSize - 1) >>> chunkShift)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = i * chunkSize;
+            long count = Math.min(chunkSize, length - start);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + 8 * start, 8 * count)
+                               .order(ByteOrder.LITTLE_ENDIAN)
+                               .asLongBuffer();
+        }
+    }
+
+    public static MappedDirichlet open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedDirichlet(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static void write(Dirichlet dirichlet, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(magic).putLong(dirichlet.upperbound).putLong(dirichlet.removeOne ? 1 : 0);
+            for (long value : dirichlet.values) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                    buffer.clear();
+                }
+                buffer.putLong(value);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    public int quotientToIndex(long quotient) {
+        if (quotient <= upperboundSqrt)
+            return (int) quotient;
+        else
+            return (int) (2 * upperboundSqrt - upperbound / quotient) + (removeOne ? 0 : 1);
+    }
+
+    public long quotient(int index) {
+        return index <= upperboundSqrt ? index : upperbound / (length - index);
+    }
+
+    public synchronized long[] quotients() {
+        if (quotients == null) {
+            long[] generated = new long[length];
+            for (int index = 1; index < length; index++)
+                generated[index] = quotient(index);
+            quotients = generated;
+        }
+        return quotients;
+    }
+
+    public long value(int index) {
+        return chunks[index >>> chunkShift].get((int) (index & (chunkSize - 1)));
+    }
+
+    public long get(long quotient) {
+        return value(quotientToIndex(quotient));
+    }
+
+    //copies the values into a heap Dirichlet
+    public Dirichlet toDirichlet() {
+        Dirichlet dirichlet = new Dirichlet(upperbound);
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i].get(0, dirichlet.values, (int) (i * chunkSize), chunks[i].capacity());
+        return dirichlet;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,438 @@
+package io.jr576.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//Convolutions of MappedPolynomials that do not fit into the heap, modulo the prime of an FFT.
+//The padded transform of size N = rows * columns is done with the four-step decomposition on the row major matrix
+//x[j1 * columns + j2]: transforms of length rows down the columns, a twiddle w_N^(j2 * k1), transforms of length columns
+//along the rows. Columns are processed in groups whose row segments are contiguous runs of at least a page, rows are
+//contiguous anyway, so every pass streams the file once. The result ends up at (k1, k2) = X[k1 + rows * k2], which does
+//not matter for a convolution since the inverse undoes it. Temporary files of 4N bytes per operand go to scratchDirectory.
+//Sizes beyond the order of the FFT (2^27 for 2013265921, and no prime below 2^31 reaches 2^29) take the wide path: the same
+//decomposition modulo the two primes in widePrimes, which have order 2^45, with the residues as pairs of packed 32-bit cells.
+//Their product exceeds N * prime^2, so Garner's algorithm recovers every exact coefficient, which is then reduced modulo
+//the prime of the FFT. That needs 8N bytes per operand and prime, and up to 24N bytes of scratch space at once.
+//Transforms are limited to 2^41: rows are at most 2^12 and the 2 * columns cells of a wide row are read into one array.
+//The scratch files are deleted as soon as a product is done, but Java cannot unmap a buffer, so their mappings and on most
+//systems their disk space are only released once the mappings are garbage collected.
+public class MappedFFT {
+    private static final int inHeapBreakpoint = 1 << 20;
+    private static final int wideOrderShift = 45;
+    private static final int maxSizeShift = 41;
+    private static final long[] widePrimes = {131013L * (1L << wideOrderShift) + 1, 131003L * (1L << wideOrderShift) + 1};
+    private static final long MASK = 0xFFFFFFFFL;
+    private static final int maxRows = 1 << 12;
+    private static final int columnGroup = 1 << 10; //4 KiB of packed coefficients per row segment
+    private final FFT fft;
+    private final long prime;
+    private final Path scratchDirectory;
+
+    public MappedFFT(FFT fft, Path scratchDirectory) {
+        this.fft = fft;
+        this.prime = fft.prime;
+        this.scratchDirectory = scratchDirectory;
+    }
+
+    private long pow(long base, long exponent) {
+        long result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = result * base % prime;
+            base = base * base % prime;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    //product of polA and polB written to productPath, exactly polA.length + polB.length - 1 coefficients in [0, prime)
+    public MappedPolynomial multiply(MappedPolynomial polA, MappedPolynomial polB, Path productPath) throws IOException {
+        return convolve(polA, polB, productPath);
+    }
+
+    public MappedPolynomial square(MappedPolynomial pol, Path squarePath) throws IOException {
+        return convolve(pol, null, squarePath);
+    }
+
+    //polB == null squares polA
+    private MappedPolynomial convolve(MappedPolynomial polA, MappedPolynomial polB, Path productPath) throws IOException {
+        long lengthB = polB == null ? polA.length : polB.length;
+        if (polA.length == 0 || lengthB == 0)
+            throw new IllegalArgumentException("Polynomials must not be empty.");
+        long productLength = polA.length + lengthB - 1;
+        long size = Long.highestOneBit(productLength);
+        if (size < productLength)
+            size *= 2;
+        if (size > 1L << maxSizeShift)
+            throw new IllegalArgumentException("Transforms are limited to 2^" + maxSizeShift + " coefficients.");
+        int logSize = Long.numberOfTrailingZeros(size);
+        int rows = Math.min(maxRows, 1 << (logSize / 2));
+        int columns = (int) (size / rows);
+        if (size > fft.order)
+            return convolveWide(polA, polB, productPath, productLength, rows, columns);
+        if (size <= inHeapBreakpoint)
+            return convolveInHeap(polA, polB, productPath, (int) productLength);
+        Path scratchA = Files.createTempFile(scratchDirectory, "fft", ".bin");
+        Path scratchB = polB == null ? null : Files.createTempFile(scratchDirectory, "fft", ".bin");
+        try (MappedPolynomial transformA = MappedPolynomial.create(scratchA, size)) {
+            forward(polA, transformA, rows, columns);
+            if (polB == null)
+                pointwise(transformA, transformA, rows, columns);
+            else
+                try (MappedPolynomial transformB = MappedPolynomial.create(scratchB, size)) {
+                    forward(polB, transformB, rows, columns);
+                    pointwise(transformA, transformB, rows, columns);
+                }
+            inverse(transformA, rows, columns);
+            MappedPolynomial product = MappedPolynomial.create(productPath, productLength);
+            forEach(rows, row -> {
+                long start = (long) row * columns;
+                int count = (int) Math.min(columns, productLength - start);
+                if (count <= 0)
+                    return;
+                long[] buffer = new long[columns];
+                transformA.read(start, buffer, 0, count);
+                product.write(start, buffer, 0, count);
+            });
+            return product;
+        } finally {
+            Files.deleteIfExists(scratchA);
+            if (scratchB != null)
+                Files.deleteIfExists(scratchB);
+        }
+    }
+
+    //the product modulo each wide prime, then combined coefficient by coefficient
+    private MappedPolynomial convolveWide(MappedPolynomial polA, MappedPolynomial polB, Path productPath, long productLength,
+                                          int rows, int columns) throws IOException {
+        long size = (long) rows * columns;
+        Path[] scratch = new Path[widePrimes.length];
+        MappedPolynomial[] residues = new MappedPolynomial[widePrimes.length];
+        try {
+            for (int k = 0; k < widePrimes.length; k++) {
+                Modulus modulus = Modulus.of(widePrimes[k]);
+                long root = wideRoot(modulus);
+                scratch[k] = Files.createTempFile(scratchDirectory, "fft", ".bin");
+                residues[k] = MappedPolynomial.create(scratch[k], 2 * size);
+                forwardWide(polA, residues[k], rows, columns, modulus, root);
+                if (polB == null)
+                    pointwiseWide(residues[k], residues[k], rows, columns, modulus);
+                else {
+                    Path scratchB = Files.createTempFile(scratchDirectory, "fft", ".bin");
+                    try (MappedPolynomial transformB = MappedPolynomial.create(scratchB, 2 * size)) {
+                        forwardWide(polB, transformB, rows, columns, modulus, root);
+                        pointwiseWide(residues[k], transformB, rows, columns, modulus);
+                    } finally {
+                        Files.deleteIfExists(scratchB);
+                    }
+                }
+                inverseWide(residues[k], rows, columns, modulus, root);
+            }
+            //x = r0 + p0 * t with t = (r1 - r0) / p0 mod p1, both terms reduced modulo the prime of the FFT
+            Modulus second = Modulus.of(widePrimes[1]);
+            long firstInverse = second.pow(second.reduce(widePrimes[0]), widePrimes[1] - 2);
+            long firstModPrime = widePrimes[0] % prime;
+            MappedPolynomial product = MappedPolynomial.create(productPath, productLength);
+            forEach(rows, row -> {
+                long start = (long) row * columns;
+                int count = (int) Math.min(columns, productLength - start);
+                if (count <= 0)
+                    return;
+                long[] low = new long[count], high = new long[count];
+                load(residues[0], true, start, low, 0, count);
+                load(residues[1], true, start, high, 0, count);
+                for (int i = 0; i < count; i++) {
+                    long t = second.multiply(second.subtract(high[i], second.reduce(low[i])), firstInverse);
+                    low[i] = (low[i] % prime + firstModPrime * (t % prime)) % prime;
+                }
+                product.write(start, low, 0, count);
+            });
+            return product;
+        } finally {
+            for (int k = 0; k < widePrimes.length; k++) {
+                if (residues[k] != null)
+                    residues[k].close();
+                if (scratch[k] != null)
+                    Files.deleteIfExists(scratch[k]);
+            }
+        }
+    }
+
+    //an element of order exactly 2^wideOrderShift
+    private static long wideRoot(Modulus modulus) {
+        long oddOrder = (modulus.mod - 1) >>> wideOrderShift;
+        for (long candidate = 2; ; candidate++) {
+            long root = modulus.pow(candidate, oddOrder);
+            if (modulus.pow(root, 1L << (wideOrderShift - 1)) != 1)
+                return root;
+        }
+    }
+
+    private MappedPolynomial convolveInHeap(MappedPolynomial polA, MappedPolynomial polB, Path productPath, int productLength)
+            throws IOException {
+        long[] polAHeap = readReduced(polA);
+        long[] product = new long[productLength];
+        if (polB == null)
+            fft.square(polAHeap, product);
+        else
+            fft.multiply(polAHeap, readReduced(polB), product);
+        MappedPolynomial result = MappedPolynomial.create(productPath, productLength);
+        result.write(0, product, 0, productLength);
+        return result;
+    }
+
+    private long[] readReduced(MappedPolynomial pol) {
+        long[] heap = new long[(int) pol.length];
+        pol.read(0, heap, 0, heap.length);
+        for (int i = 0; i < heap.length; i++)
+            heap[i] %= prime;
+        return heap;
+    }
+
+    //column transforms reading source (zero padded, reduced modulo prime), twiddles, row transforms, all into target
+    private void forward(MappedPolynomial source, MappedPolynomial target, int rows, int columns) {
+        NttPlan columnPlan = fft.plan(rows);
+        long root = pow(fft.primRoot, fft.order / ((long) rows * columns));
+        int group = Math.min(columns, columnGroup);
+        forEach(columns / group, g -> {
+            long[][] block = readColumns(source, false, rows, columns, g * group, group);
+            for (int c = 0; c < group; c++) {
+                long[] column = block[c];
+                for (int j = 0; j < rows; j++)
+                    column[j] %= prime;
+                columnPlan.forward(column);
+                long twiddle = pow(root, g * group + c);
+                long factor = 1;
+                for (int k = 0; k < rows; k++) {
+                    column[k] = column[k] * factor % prime;
+                    factor = factor * twiddle % prime;
+                }
+            }
+            writeColumns(target, false, block, rows, columns, g * group);
+        });
+        NttPlan rowPlan = fft.plan(columns);
+        forEach(rows, row -> {
+            long[] buffer = new long[columns];
+            target.read((long) row * columns, buffer, 0, columns);
+            rowPlan.forward(buffer);
+            target.write((long) row * columns, buffer, 0, columns);
+        });
+    }
+
+    //exact inverse of forward, including the division by the size
+    private void inverse(MappedPolynomial transform, int rows, int columns) {
+        NttPlan rowPlan = fft.plan(columns);
+        forEach(rows, row -> {
+            long[] buffer = new long[columns];
+            transform.read((long) row * columns, buffer, 0, columns);
+            rowPlan.inverse(buffer);
+            transform.write((long) row * columns, buffer, 0, columns);
+        });
+        NttPlan columnPlan = fft.plan(rows);
+        long root = pow(pow(fft.primRoot, fft.order / ((long) rows * columns)), prime - 2);
+        int group = Math.min(columns, columnGroup);
+        forEach(columns / group, g -> {
+            long[][] block = readColumns(transform, false, rows, columns, g * group, group);
+            for (int c = 0; c < group; c++) {
+                long[] column = block[c];
+                long twiddle = pow(root, g * group + c);
+                long factor = 1;
+                for (int k = 0; k < rows; k++) {
+                    column[k] = column[k] * factor % prime;
+                    factor = factor * twiddle % prime;
+                }
+                columnPlan.inverse(column);
+            }
+            writeColumns(transform, false, block, rows, columns, g * group);
+        });
+    }
+
+    private void pointwise(MappedPolynomial transform, MappedPolynomial multiplyWith, int rows, int columns) {
+        forEach(rows, row -> {
+            long start = (long) row * columns;
+            long[] buffer = new long[columns];
+            long[] other = multiplyWith == transform ? buffer : new long[columns];
+            transform.read(start, buffer, 0, columns);
+            if (other != buffer)
+                multiplyWith.read(start, other, 0, columns);
+            for (int i = 0; i < columns; i++)
+                buffer[i] = buffer[i] * other[i] % prime;
+            transform.write(start, buffer, 0, columns);
+        });
+    }
+
+    //forward with the arithmetic modulo a wide prime, reading the narrow source and writing wide residues into target
+    private void forwardWide(MappedPolynomial source, MappedPolynomial target, int rows, int columns, Modulus modulus, long root) {
+        WidePlan columnPlan = new WidePlan(modulus, root, rows);
+        long sizeRoot = modulus.pow(root, (1L << wideOrderShift) / ((long) rows * columns));
+        int group = Math.min(columns, columnGroup);
+        forEach(columns / group, g -> {
+            long[][] block = readColumns(source, false, rows, columns, g * group, group);
+            for (int c = 0; c < group; c++) {
+                long[] column = block[c];
+                for (int j = 0; j < rows; j++)
+                    column[j] %= prime;
+                columnPlan.transform(column, false);
+                twiddle(column, modulus.pow(sizeRoot, g * group + c), modulus);
+            }
+            writeColumns(target, true, block, rows, columns, g * group);
+        });
+        WidePlan rowPlan = new WidePlan(modulus, root, columns);
+        forEach(rows, row -> {
+            long[] buffer = new long[columns];
+            load(target, true, (long) row * columns, buffer, 0, columns);
+            rowPlan.transform(buffer, false);
+            store(target, true, (long) row * columns, buffer, 0, columns);
+        });
+    }
+
+    private void inverseWide(MappedPolynomial transform, int rows, int columns, Modulus modulus, long root) {
+        WidePlan rowPlan = new WidePlan(modulus, root, columns);
+        forEach(rows, row -> {
+            long[] buffer = new long[columns];
+            load(transform, true, (long) row * columns, buffer, 0, columns);
+            rowPlan.transform(buffer, true);
+            store(transform, true, (long) row * columns, buffer, 0, columns);
+        });
+        WidePlan columnPlan = new WidePlan(modulus, root, rows);
+        long sizeRoot = modulus.pow(root, (1L << wideOrderShift) / ((long) rows * columns));
+        long inverseRoot = modulus.pow(sizeRoot, (long) rows * columns - 1);
+        int group = Math.min(columns, columnGroup);
+        forEach(columns / group, g -> {
+            long[][] block = readColumns(transform, true, rows, columns, g * group, group);
+            for (int c = 0; c < group; c++) {
+                twiddle(block[c], modulus.pow(inverseRoot, g * group + c), modulus);
+                columnPlan.transform(block[c], true);
+            }
+            writeColumns(transform, true, block, rows, columns, g * group);
+        });
+    }
+
+    //column[k] *= twiddle^k
+    private static void twiddle(long[] column, long twiddle, Modulus modulus) {
+        long factor = 1;
+        for (int k = 0; k < column.length; k++) {
+            column[k] = modulus.multiply(column[k], factor);
+            factor = modulus.multiply(factor, twiddle);
+        }
+    }
+
+    private void pointwiseWide(MappedPolynomial transform, MappedPolynomial multiplyWith, int rows, int columns, Modulus modulus) {
+        forEach(rows, row -> {
+            long start = (long) row * columns;
+            long[] buffer = new long[columns];
+            long[] other = multiplyWith == transform ? buffer : new long[columns];
+            load(transform, true, start, buffer, 0, columns);
+            if (other != buffer)
+                load(multiplyWith, true, start, other, 0, columns);
+            for (int i = 0; i < columns; i++)
+                buffer[i] = modulus.multiply(buffer[i], other[i]);
+            store(transform, true, start, buffer, 0, columns);
+        });
+    }
+
+    //radix 2 transform of a power of two length modulo a wide prime, roots[h + j] = w_2h^j for every half length h
+    private static final class WidePlan {
+        private final Modulus modulus;
+        private final int length;
+        private final long[] roots;
+        private final long[] inverseRoots;
+        private final long lengthInverse;
+
+        WidePlan(Modulus modulus, long root, int length) {
+            this.modulus = modulus;
+            this.length = length;
+            this.roots = new long[Math.max(length, 1)];
+            this.inverseRoots = new long[roots.length];
+            for (int h = 1; h < length; h <<= 1) {
+                long w = modulus.pow(root, (1L << wideOrderShift) / (2L * h));
+                long inverseW = modulus.pow(w, 2L * h - 1);
+                roots[h] = inverseRoots[h] = 1;
+                for (int j = 1; j < h; j++) {
+                    roots[h + j] = modulus.multiply(roots[h + j - 1], w);
+                    inverseRoots[h + j] = modulus.multiply(inverseRoots[h + j - 1], inverseW);
+                }
+            }
+            this.lengthInverse = modulus.pow(length, modulus.mod - 2);
+        }
+
+        //in place and in natural order, the inverse includes the division by the length
+        void transform(long[] a, boolean inverse) {
+            for (int i = 1, j = 0; i < length; i++) {
+                int bit = length >> 1;
+                for (; (j & bit) != 0; bit >>= 1)
+                    j ^= bit;
+                j ^= bit;
+                if (i < j) {
+                    long swap = a[i];
+                    a[i] = a[j];
+                    a[j] = swap;
+                }
+            }
+            long[] w = inverse ? inverseRoots : roots;
+            for (int h = 1; h < length; h <<= 1)
+                for (int i = 0; i < length; i += 2 * h)
+                    for (int j = 0; j < h; j++) {
+                        long u = a[i + j], v = modulus.multiply(a[i + j + h], w[h + j]);
+                        a[i + j] = modulus.add(u, v);
+                        a[i + j + h] = modulus.subtract(u, v);
+                    }
+            if (inverse)
+                for (int i = 0; i < length; i++)
+                    a[i] = modulus.multiply(a[i], lengthInverse);
+        }
+    }
+
+    //coefficients [index, index + count) of pol, for wide the residue at index is the pair of cells (2 index, 2 index + 1)
+    private static void load(MappedPolynomial pol, boolean wide, long index, long[] dest, int offset, int count) {
+        if (!wide) {
+            pol.read(index, dest, offset, count);
+            return;
+        }
+        long[] cells = new long[2 * count];
+        pol.read(2 * index, cells, 0, 2 * count);
+        for (int i = 0; i < count; i++)
+            dest[offset + i] = cells[2 * i] | cells[2 * i + 1] << 32;
+    }
+
+    private static void store(MappedPolynomial pol, boolean wide, long index, long[] source, int offset, int count) {
+        if (!wide) {
+            pol.write(index, source, offset, count);
+            return;
+        }
+        long[] cells = new long[2 * count];
+        for (int i = 0; i < count; i++) {
+            cells[2 * i] = source[offset + i] & MASK;
+            cells[2 * i + 1] = source[offset + i] >>> 32;
+        }
+        pol.write(2 * index, cells, 0, 2 * count);
+    }
+
+    //block[c][j] = pol[j * columns + firstColumn + c], read one contiguous row segment at a time
+    private static long[][] readColumns(MappedPolynomial pol, boolean wide, int rows, int columns, int firstColumn, int group) {
+        long[][] block = new long[group][rows];
+        long[] segment = new long[group];
+        for (int j = 0; j < rows; j++) {
+            load(pol, wide, (long) j * columns + firstColumn, segment, 0, group);
+            for (int c = 0; c < group; c++)
+                block[c][j] = segment[c];
+        }
+        return block;
+    }
+
+    private static void writeColumns(MappedPolynomial pol, boolean wide, long[][] block, int rows, int columns, int firstColumn) {
+        long[] segment = new long[block.length];
+        for (int j = 0; j < rows; j++) {
+            for (int c = 0; c < block.length; c++)
+                segment[c] = block[c][j];
+            store(pol, wide, (long) j * columns + firstColumn, segment, 0, block.length);
+        }
+    }
+
+    private static void forEach(int count, IntConsumer task) {
+        IntStream.range(0, count).parallel().forEach(task);
+    }
+}
@@ -0,0 +1,96 @@
+package io.jr576.utils;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Polynomial stored in a memory mapped file as packed little endian 32-bit coefficients, for lengths beyond what a long[] or the heap holds.
+//The file is mapped in chunks of 2^28 coefficients (1 GiB) since a single mapping is limited to 2^31 bytes.
+//Absolute reads and writes of disjoint ranges may run concurrently. The mappings stay valid until they are garbage collected,
+//close only releases the channel.
+public class MappedPolynomial implements AutoCloseable {
+    static final int chunkShift = 28;
+    private static final long chunkSize = 1L << chunkShift;
+    private static final long MASK = 0xFFFFFFFFL;
+    public final long length;
+    private final FileChannel channel;
+    private final IntBuffer[] chunks;
+
+    private MappedPolynomial(FileChannel channel, long length) throws IOException {
+        this.length = length;
+        this.channel = channel;
+        this.chunks = new IntBuffer[(int) ((length + chunkSize - 1) >>> chunkShift)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = i * chunkSize;
+            long count = Math.min(chunkSize, length - start);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, 4 * start, 4 * count)
+                               .order(ByteOrder.LITTLE_ENDIAN)
+                               .asIntBuffer();
+        }
+    }
+
+    //creates (or overwrites) the file with length zero coefficients
+    public static MappedPolynomial create(Path path, long length) throws IOException {
+        if (length < 0)
+            throw new IllegalArgumentException("Length must be non-negative.");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new MappedPolynomial(channel, length);
+    }
+
+    public static MappedPolynomial open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedPolynomial(channel, channel.size() / 4);
+    }
+
+    public long get(long index) {
+        return chunks[(int) (index >>> chunkShift)].get((int) (index & (chunkSize - 1))) & MASK;
+    }
+
+    //value in [0, 2^32)
+    public void set(long index, long value) {
+        chunks[(int) (index >>> chunkShift)].put((int) (index & (chunkSize - 1)), (int) value);
+    }
+
+    //dest[offset, offset + count) = coefficients [index, index + count), zero past the end
+    void read(long index, long[] dest, int offset, int count) {
+        int[] packed = new int[Math.min(count, (int) Math.min(chunkSize, Math.max(0, length - index)))];
+        while (count > 0 && index < length) {
+            int position = (int) (index & (chunkSize - 1));
+            int part = (int) Math.min(Math.min(count, chunkSize - position), length - index);
+            chunks[(int) (index >>> chunkShift)].get(position, packed, 0, part);
+            for (int i = 0; i < part; i++)
+                dest[offset + i] = packed[i] & MASK;
+            index += part;
+            offset += part;
+            count -= part;
+        }
+        for (int i = 0; i < count; i++)
+            dest[offset + i] = 0;
+    }
+
+    //coefficients [index, index + count) = source[offset, offset + count), values in [0, 2^32)
+    void write(long index, long[] source, int offset, int count) {
+        if (index + count > length)
+            throw new IndexOutOfBoundsException("Write past the end of the polynomial.");
+        int[] packed = new int[Math.min(count, (int) chunkSize)];
+        while (count > 0) {
+            int position = (int) (index & (chunkSize - 1));
+            int part = (int) Math.min(count, chunkSize - position);
+            for (int i = 0; i < part; i++)
+                packed[i] = (int) source[offset + i];
+            chunks[(int) (index >>> chunkShift)].put(position, packed, 0, part);
+            index += part;
+            offset += part;
+            count -= part;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,169 @@
+package io.jr576.utils;
+
+//Arithmetic on residues in [0, mod) for 1 <= mod < 2^62, so the sum of two residues never overflows a long.
+//of(mod) uses Barrett reduction with a 64-bit reciprocal below 2^31, where a product still fits into a long, and Montgomery
+//reduction with R = 2^64 on the 128-bit products of Math.multiplyHigh above, so neither needs a hardware division.
+//Sums of products are accumulated lazily: starting from 0, accumulate(sum, a, b) may return an unreduced value
+//(a long below the overflow bound, or a sum of Montgomery products) and finish(sum) turns it into the residue.
+//Other reductions plug in by extending Modulus, only multiply is required.
+public abstract class Modulus {
+    public final long mod;
+
+    protected Modulus(long mod) {
+        if (mod < 1 || mod >= 1L << 62)
+            throw new IllegalArgumentException("Modulus must be in [1, 2^62).");
+        this.mod = mod;
+    }
+
+    public static Modulus of(long mod) {
+        return mod < 1L << 31 ? new BarrettModulus(mod) : new MontgomeryModulus(mod);
+    }
+
+    //a, b in [0, mod)
+    public abstract long multiply(long a, long b);
+
+    public long add(long a, long b) {
+        long sum = a + b;
+        return sum >= mod ? sum - mod : sum;
+    }
+
+    public long subtract(long a, long b) {
+        long difference = a - b;
+        return difference < 0 ? difference + mod : difference;
+    }
+
+    //any long to [0, mod)
+    public long reduce(long value) {
+        return Math.floorMod(value, mod);
+    }
+
+    public long accumulate(long sum, long a, long b) {
+        return add(sum, multiply(a, b));
+    }
+
+    public long finish(long sum) {
+        return sum;
+    }
+
+    public long pow(long base, long exponent) {
+        long result = reduce(1);
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = multiply(result, base);
+            base = multiply(base, base);
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private static final class BarrettModulus extends Modulus {
+        private final long reciprocal; //floor((2^64 - 1) / mod)
+        private final long lazyBound; //a sum below it can take one more product without overflow
+
+        BarrettModulus(long mod) {
+            super(mod);
+            this.reciprocal = Long.divideUnsigned(-1L, mod);
+            this.lazyBound = Long.MAX_VALUE - (mod - 1) * (mod - 1);
+        }
+
+        //value >= 0, the estimated quotient is at most one too small
+        private long barrett(long value) {
+            long remainder = value - Math.unsignedMultiplyHigh(value, reciprocal) * mod;
+            return remainder >= mod ? remainder - mod : remainder;
+        }
+
+        @Override
+        public long multiply(long a, long b) {
+            return barrett(a * b);
+        }
+
+        @Override
+        public long reduce(long value) {
+            return value >= 0 ? barrett(value) : mod - 1 - barrett(-(value + 1));
+        }
+
+        @Override
+        public long accumulate(long sum, long a, long b) {
+            sum += a * b;
+            return sum >= lazyBound ? barrett(sum) : sum;
+        }
+
+        @Override
+        public long finish(long sum) {
+            return barrett(sum);
+        }
+    }
+
+    //mod = odd * 2^twos: Montgomery modulo odd, the factor 2^twos is a mask, combined by the Chinese remainder theorem
+    private static final class MontgomeryModulus extends Modulus {
+        private final long odd;
+        private final int twos;
+        private final long twoMask;
+        private final long oddInverse; //odd^(-1) mod 2^64
+        private final long rSquared; //2^128 mod odd
+
+        MontgomeryModulus(long mod) {
+            super(mod);
+            this.twos = Long.numberOfTrailingZeros(mod);
+            this.odd = mod >>> twos;
+            this.twoMask = (1L << twos) - 1;
+            long inverse = odd; //correct to 3 bits, every Newton step doubles that
+            for (int i = 0; i < 5; i++)
+                inverse *= 2 - odd * inverse;
+            this.oddInverse = inverse;
+            long r = Long.remainderUnsigned(-1L, odd) + 1;
+            if (r == odd)
+                r = 0;
+            for (int i = 0; i < 64; i++)
+                r = r >= odd - r ? r - (odd - r) : 2 * r;
+            this.rSquared = r;
+        }
+
+        //(high * 2^64 + low) / 2^64 mod odd for high * 2^64 + low < odd * 2^64, in [0, odd)
+        private long redc(long high, long low) {
+            long u = -low * oddInverse;
+            long result = high + Math.unsignedMultiplyHigh(u, odd) + (low != 0 ? 1 : 0);
+            return result >= odd ? result - odd : result;
+        }
+
+        //a in [0, mod) to [0, odd) without a division: subtract odd * 2^s where it fits, s = twos - 1, ..., 0
+        private long reduceOdd(long a) {
+            for (int s = twos - 1; s >= 0; s--) {
+                long multiple = odd << s;
+                if (a >= multiple)
+                    a -= multiple;
+            }
+            return a;
+        }
+
+        //a, b in [0, odd)
+        private long multiplyOdd(long a, long b) {
+            long reduced = redc(Math.unsignedMultiplyHigh(a, b), a * b);
+            return redc(Math.unsignedMultiplyHigh(reduced, rSquared), reduced * rSquared);
+        }
+
+        @Override
+        public long multiply(long a, long b) {
+            if (twos == 0)
+                return multiplyOdd(a, b);
+            long oddPart = multiplyOdd(reduceOdd(a), reduceOdd(b));
+            long twoPart = a * b & twoMask;
+            return oddPart + odd * ((twoPart - oddPart) * oddInverse & twoMask);
+        }
+
+        //for an odd mod the sum holds sum a * b / 2^64 and finish multiplies by 2^64 once
+        @Override
+        public long accumulate(long sum, long a, long b) {
+            if (twos != 0)
+                return super.accumulate(sum, a, b);
+            return add(sum, redc(Math.unsignedMultiplyHigh(a, b), a * b));
+        }
+
+        @Override
+        public long finish(long sum) {
+            if (twos != 0)
+                return sum;
+            return redc(Math.unsignedMultiplyHigh(sum, rSquared), sum * rSquared);
+        }
+    }
+}
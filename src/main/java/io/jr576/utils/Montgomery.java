@@ -0,0 +1,74 @@
+package io.jr576.utils;
+
+//Montgomery arithmetic modulo an odd mod < 2^30 with R = 2^32.
+//Values in Montgomery form are reduced lazily and live in [0, 2*mod), so add/subtract need a single compare
+//and multiply never needs a hardware division.
+public class Montgomery {
+    private static final long MASK = 0xFFFFFFFFL;
+    public final long mod;
+    public final long one; //R mod mod, i.e. 1 in Montgomery form
+    private final long twoMod;
+    final long modInverse; //-mod^(-1) mod 2^32
+    private final long rSquared; //R^2 mod mod
+
+    public Montgomery(long mod) {
+        if (!supports(mod))
+            throw new IllegalArgumentException("Modulus must be odd and smaller than 2^30.");
+        this.mod = mod;
+        this.twoMod = 2 * mod;
+        long inverse = mod; //correct to 3 bits, every Newton step doubles that
+        for (int i = 0; i < 4; i++)
+            inverse *= 2 - mod * inverse;
+        this.modInverse = -inverse & MASK;
+        this.one = (1L << 32) % mod;
+        this.rSquared = one * one % mod;
+    }
+
+    public static boolean supports(long mod) {
+        return mod > 2 && (mod & 1) == 1 && mod < 1L << 30;
+    }
+
+    //value < mod * 2^32, result in [0, 2*mod)
+    public long reduce(long value) {
+        return (value + ((value * modInverse) & MASK) * mod) >>> 32;
+    }
+
+    public long multiply(long a, long b) {
+        return reduce(a * b);
+    }
+
+    public long add(long a, long b) {
+        long sum = a + b;
+        return sum >= twoMod ? sum - twoMod : sum;
+    }
+
+    public long subtract(long a, long b) {
+        long difference = a - b;
+        return difference < 0 ? difference + twoMod : difference;
+    }
+
+    //[0, 2*mod) -> [0, mod)
+    public long normalize(long value) {
+        return value >= mod ? value - mod : value;
+    }
+
+    //value in [0, 2^32)
+    public long toMontgomery(long value) {
+        return reduce(value * rSquared);
+    }
+
+    public long fromMontgomery(long value) {
+        return normalize(reduce(value));
+    }
+
+    public long pow(long base, long exponent) {
+        long result = one;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = multiply(result, base);
+            base = multiply(base, base);
+            exponent >>= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,270 @@
+package io.jr576.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.IntStream;
+
+//Summatory functions of a multiplicative f for every quotient of a Dirichlet: get(q) = sum_{1 <= m <= q} f(m), where
+//f(p, k) = f(p^k) is given for primes p and k >= 1. The sums are taken modulo mod, or wrap around modulo 2^64 without mod.
+//Min_25 needs primeSums.get(q) = sum over primes p <= q of f(p) (see PrimeSums) and runs in O(n^(3/4) / log n): going through
+//the primes p <= sqrt(n) downwards, F(v) = sum of f(m) over 2 <= m <= v with smallest prime factor >= p is updated for v >= p^2 by
+//F(v) += sum_{e >= 1, p^(e+1) <= v} f(p^e) (F(v / p^e) - primeSums(p)) + f(p^(e+1)), with the same parallel stages as PrimeSums.
+//The powerful number method takes a multiplicative g with g(p) = f(p) and its sums gSums instead. h = f / g vanishes on every
+//number that is not powerful, so sum_{m <= v} f(m) = sum over powerful m <= v of h(m) G(v / m), enumerated per quotient in parallel.
+//sieve fills the quotients up to breakPoint (about n^(2/3)) directly from a segmented sieve over the integers, see below.
+public class MultiplicativeSums {
+    private static final int segmentSize = 1 << 15;
+
+    public static final LongBinaryOperator mobius = (p, k) -> k == 1 ? -1 : 0;
+    public static final LongBinaryOperator totient = (p, k) -> {
+        long value = p - 1;
+        for (int i = 1; i < k; i++)
+            value *= p;
+        return value;
+    };
+    public static final LongBinaryOperator divisorCount = (p, k) -> k + 1;
+
+    //sigma_exponent(p^k) = sum_{i <= k} p^(i * exponent), wrapping modulo 2^64
+    public static LongBinaryOperator divisorSigma(int exponent) {
+        return (p, k) -> {
+            long power = 1;
+            for (int i = 0; i < exponent; i++)
+                power *= p;
+            long value = 1;
+            for (int i = 0; i < k; i++)
+                value = value * power + 1;
+            return value;
+        };
+    }
+
+    public static Dirichlet min25(Dirichlet primeSums, LongBinaryOperator f) {
+        return min25(primeSums, f, 0);
+    }
+
+    public static Dirichlet min25Mod(Dirichlet primeSums, LongBinaryOperator f, long mod) {
+        checkMod(mod);
+        return min25(primeSums, f, mod);
+    }
+
+    //Sets sums.get(q) = sum_{m <= q} f(m) for every quotient q up to about n^(2/3) and returns the index of the last one set,
+    //the other values are left alone. f is only called for prime powers below sqrt(breakPoint) and once per larger prime.
+    public static int sieve(Dirichlet sums, LongBinaryOperator f) {
+        return sieve(sums, f, 0);
+    }
+
+    public static int sieveMod(Dirichlet sums, LongBinaryOperator f, long mod) {
+        checkMod(mod);
+        return sieve(sums, f, mod);
+    }
+
+    public static Dirichlet powerful(Dirichlet gSums, LongBinaryOperator g, LongBinaryOperator f) {
+        return powerful(gSums, g, f, 0);
+    }
+
+    public static Dirichlet powerfulMod(Dirichlet gSums, LongBinaryOperator g, LongBinaryOperator f, long mod) {
+        checkMod(mod);
+        return powerful(gSums, g, f, mod);
+    }
+
+    private static void checkMod(long mod) {
+        if (mod < 1 || mod > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Modulus must be in [1, 2^31).");
+    }
+
+    //mod == 0 stands for 2^64 in all helpers
+    private static long reduce(long value, long mod) {
+        return mod == 0 ? value : Math.floorMod(value, mod);
+    }
+
+    private static long multiply(long a, long b, long mod) {
+        return mod == 0 ? a * b : a * b % mod;
+    }
+
+    private static long add(long a, long b, long mod) {
+        return mod == 0 ? a + b : (a + b) % mod;
+    }
+
+    private static int[] primesUpTo(int upperbound) {
+        boolean[] isPrime = PrimeSums.smallPrimes(upperbound);
+        return IntStream.rangeClosed(2, upperbound).filter(i -> isPrime[i]).toArray();
+    }
+
+    //table[k] = function(p, k) for p^k <= upperbound, table[0] = 1
+    private static long[] primePowerTable(LongBinaryOperator function, long p, long upperbound, long mod) {
+        int maxExponent = 0;
+        for (long power = 1; power <= upperbound / p; power *= p)
+            maxExponent++;
+        long[] table = new long[maxExponent + 1];
+        table[0] = reduce(1, mod);
+        for (int k = 1; k <= maxExponent; k++)
+            table[k] = reduce(function.applyAsLong(p, k), mod);
+        return table;
+    }
+
+    private static Dirichlet min25(Dirichlet primeSums, LongBinaryOperator f, long mod) {
+        Dirichlet sums = primeSums.clone();
+        long upperbound = sums.upperbound;
+        long[] values = sums.values;
+        long[] primeValues = primeSums.values;
+        for (int i = 1; i < values.length; i++)
+            values[i] = reduce(primeValues[i], mod);
+        int length = values.length;
+        int sqrt = sums.upperboundSqrt;
+        int largeCount = length - 1 - sqrt; //large quotients are n / d at index length - d for d <= largeCount
+        int[] primes = primesUpTo(sqrt);
+        for (int i = primes.length - 1; i >= 0; i--) {
+            long p = primes[i];
+            long[] fPowers = primePowerTable(f, p, upperbound, mod);
+            long belowSum = reduce(primeValues[(int) p], mod);
+            long square = p * p;
+            int lastLarge = (int) Math.min(largeCount, upperbound / square);
+            PrimeSums.forEachStage(lastLarge, p, d -> {
+                long v = upperbound / d;
+                long sum = 0;
+                long divisor = d;
+                for (int e = 1; p <= v / p; e++) {
+                    v /= p;
+                    divisor *= p;
+                    long read = divisor <= largeCount ? values[(int) (length - divisor)] : values[(int) v];
+                    sum = add(sum, add(multiply(fPowers[e], reduce(read - belowSum, mod), mod), fPowers[e + 1], mod), mod);
+                }
+                values[length - d] = add(values[length - d], sum, mod);
+            });
+            for (long quotient = sqrt; quotient >= square; quotient--) {
+                long v = quotient;
+                long sum = 0;
+                for (int e = 1; p <= v / p; e++) {
+                    v /= p;
+                    sum = add(sum, add(multiply(fPowers[e], reduce(values[(int) v] - belowSum, mod), mod), fPowers[e + 1], mod), mod);
+                }
+                values[(int) quotient] = add(values[(int) quotient], sum, mod);
+            }
+        }
+        for (int i = 1; i < length; i++)
+            values[i] = add(values[i], 1, mod);
+        return sums;
+    }
+
+    //[0, limit] is cut into contiguous groups of cache sized segments, one parallel task per group. In a segment each prime
+    //p <= sqrt(limit) goes through its powers p^e downwards and claims the multiples of p^e it has not claimed yet, so m gets
+    //f(p^k) for the exact power p^k dividing it without a single division. A factored part below m leaves one prime > sqrt(m).
+    //Each group writes its own prefix sums into the values and the group totals are added afterwards.
+    private static int sieve(Dirichlet sums, LongBinaryOperator f, long mod) {
+        long limit = sums.breakPoint;
+        int last = sums.quotientToIndex(limit);
+        int[] primes = primesUpTo((int) Math.sqrt(limit));
+        long[][] fPowers = new long[primes.length][];
+        for (int i = 0; i < primes.length; i++)
+            fPowers[i] = primePowerTable(f, primes[i], limit, mod);
+        long segments = limit / segmentSize + 1;
+        int groups = (int) Math.min(segments, 16L * ForkJoinPool.getCommonPoolParallelism());
+        long[] bounds = new long[groups + 1];
+        for (int g = 0; g <= groups; g++)
+            bounds[g] = Math.min(limit + 1, segments * g / groups * segmentSize);
+        long[] totals = new long[groups];
+        IntStream.range(0, groups)
+                 .parallel()
+                 .forEach(g -> totals[g] = sieveGroup(sums, last, f, primes, fPowers, bounds[g], bounds[g + 1], mod));
+        long[] offsets = new long[groups];
+        for (int g = 1; g < groups; g++)
+            offsets[g] = add(offsets[g - 1], totals[g - 1], mod);
+        IntStream.range(1, groups)
+                 .parallel()
+                 .forEach(g -> {
+                     for (int i = sums.quotientToIndex(bounds[g]); i <= last && sums.quotients[i] < bounds[g + 1]; i++)
+                         sums.values[i] = add(sums.values[i], offsets[g], mod);
+                 });
+        return last;
+    }
+
+    //sieves [from, to), writes the prefix sums from 'from' on into the values of sums and returns the total
+    private static long sieveGroup(Dirichlet sums, int last, LongBinaryOperator f, int[] primes, long[][] fPowers, long from, long to, long mod) {
+        long[] factored = new long[segmentSize];
+        long[] value = new long[segmentSize];
+        int[] claimed = new int[segmentSize];
+        int index = sums.quotientToIndex(Math.max(from, 1));
+        long sum = 0;
+        for (long lo = from; lo < to; lo += segmentSize) {
+            int size = (int) Math.min(segmentSize, to - lo);
+            long hi = lo + size;
+            for (int j = 0; j < size; j++) {
+                factored[j] = 1;
+                value[j] = reduce(1, mod);
+                claimed[j] = 0;
+            }
+            for (int i = 0; i < primes.length && (long) primes[i] * primes[i] < hi; i++) {
+                int p = primes[i];
+                long[] powers = fPowers[i];
+                int e = 1;
+                long power = p;
+                while (e + 1 < powers.length && power * p < hi) {
+                    power *= p;
+                    e++;
+                }
+                for (; e >= 1; e--, power /= p)
+                    for (long m = Math.max(power, (lo + power - 1) / power * power); m < hi; m += power) {
+                        int j = (int) (m - lo);
+                        if (claimed[j] != p) {
+                            claimed[j] = p;
+                            factored[j] *= power;
+                            value[j] = multiply(value[j], powers[e], mod);
+                        }
+                    }
+            }
+            for (int j = lo == 0 ? 1 : 0; j < size; j++) {
+                long m = lo + j;
+                if (factored[j] != m)
+                    value[j] = multiply(value[j], reduce(f.applyAsLong(m / factored[j], 1), mod), mod);
+                sum = add(sum, value[j], mod);
+                if (index <= last && sums.quotients[index] == m)
+                    sums.values[index++] = sum;
+            }
+        }
+        return sum;
+    }
+
+    private static Dirichlet powerful(Dirichlet gSums, LongBinaryOperator g, LongBinaryOperator f, long mod) {
+        long upperbound = gSums.upperbound;
+        int[] primes = primesUpTo(gSums.upperboundSqrt);
+        //h(p^k) = f(p^k) - sum_{i < k} h(p^i) g(p^(k - i)), h(p) = f(p) - g(p) has to vanish
+        long[][] h = new long[primes.length][];
+        for (int i = 0; i < primes.length; i++) {
+            long[] fPowers = primePowerTable(f, primes[i], upperbound, mod);
+            long[] gPowers = primePowerTable(g, primes[i], upperbound, mod);
+            long[] hPowers = new long[fPowers.length];
+            hPowers[0] = fPowers[0];
+            for (int k = 1; k < hPowers.length; k++) {
+                long value = fPowers[k];
+                for (int j = 0; j < k; j++)
+                    value -= multiply(hPowers[j], gPowers[k - j], mod);
+                hPowers[k] = reduce(value, mod);
+            }
+            if (hPowers.length > 1 && hPowers[1] != 0)
+                throw new IllegalArgumentException("f(p) and g(p) differ for p = " + primes[i] + ".");
+            h[i] = hPowers;
+        }
+        Dirichlet sums = gSums.clone();
+        IntStream.range(1, sums.values.length)
+                 .parallel()
+                 .forEach(i -> sums.values[i] = powerfulSum(gSums, primes, h, sums.quotients[i], 0, 1, reduce(1, mod), mod));
+        return sums;
+    }
+
+    //sum over powerful m = base * m' <= v with m' built from primes[from...] of h(m) G(v / m), where hBase = h(base)
+    private static long powerfulSum(Dirichlet gSums, int[] primes, long[][] h, long v, int from, long base, long hBase, long mod) {
+        long rest = v / base;
+        long sum = multiply(hBase, reduce(gSums.get(rest), mod), mod);
+        for (int i = from; i < primes.length && (long) primes[i] * primes[i] <= rest; i++) {
+            long p = primes[i];
+            long power = p * p;
+            for (int k = 2; ; k++) {
+                if (h[i][k] != 0)
+                    sum = add(sum, powerfulSum(gSums, primes, h, v, i + 1, base * power, multiply(hBase, h[i][k], mod), mod), mod);
+                if (power > rest / p)
+                    break;
+                power *= p;
+            }
+        }
+        return sum;
+    }
+}
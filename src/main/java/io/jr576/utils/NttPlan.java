@@ -0,0 +1,362 @@
+package io.jr576.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//In-place number theoretic transform of one fixed power of two size, obtained through FFT.plan(size).
+//Plans are immutable and can be shared between threads. Buffers may be longer than size, only the first size entries are used.
+//Coefficients are kept in normal form, the twiddles are stored in Montgomery form so that multiplying by them needs no conversion.
+//A pointwise product therefore carries an extra factor R^-1, which inverseProducts removes together with 1/size.
+//Transforms larger than a cache block are decomposed recursively: a range first gets its two outermost stages as one fused
+//radix-4 pass (radix-2 for the SIMD and the non-Montgomery kernels, or if only one stage is left above the block size),
+//then its quarters are transformed independently,
+//so that every block of blockSize entries runs all its remaining stages while it is cache resident. Passes are split into
+//coarse tasks of at least minimumTaskSize butterflies and the quarters run as separate tasks.
+public class NttPlan {
+    private static final int cacheBlock = 1 << 15; //entries, 256 KiB of longs fits into a typical L2 cache
+    private static final int minimumTaskSize = 1 << 12;
+    private static final int vectorBreakpoint = 1 << 10;
+    //the SIMD kernel needs --add-modules jdk.incubator.vector at runtime, without it the scalar kernel is used
+    static final boolean vectorApiAvailable = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    public final int size;
+    final long prime;
+    final Montgomery montgomery; //null when the prime is too large for Montgomery arithmetic
+    private final long[] twiddles; //twiddles[half + j] = w_{2 * half}^j, every stage is contiguous
+    private final long[] inverseTwiddles;
+    private final long sizeInverse;
+    private final long productScale;
+    private volatile int[] bitReversal;
+    private final boolean useVectorKernel;
+    private final boolean useRadix4;
+    private final int blockSize;
+    private final boolean parallel;
+
+    //root has to be a primitive size-th root of unity modulo prime
+    NttPlan(long prime, long root, int size, Montgomery montgomery) {
+        this.prime = prime;
+        this.size = size;
+        this.montgomery = montgomery;
+        this.useVectorKernel = vectorApiAvailable && montgomery != null && size >= vectorBreakpoint;
+        //fusing stages pays off for the scalar kernel, the SIMD kernel is register bound and stays radix-2
+        this.useRadix4 = montgomery != null && !useVectorKernel;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        this.blockSize = chooseBlockSize(size, parallelism);
+        this.parallel = parallelism > 1 && size > blockSize;
+        this.twiddles = initializeTwiddles(root);
+        this.inverseTwiddles = initializeTwiddles(pow(root, size - 1));
+        long sizeInverse = pow(size, prime - 2);
+        if (montgomery != null) {
+            this.sizeInverse = montgomery.toMontgomery(sizeInverse);
+            this.productScale = montgomery.toMontgomery(this.sizeInverse);
+        } else {
+            this.sizeInverse = sizeInverse;
+            this.productScale = sizeInverse;
+        }
+    }
+
+    private long pow(long base, long exponent) {
+        long result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = result * base % prime;
+            base = base * base % prime;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private long[] initializeTwiddles(long root) {
+        long[] twiddles = new long[Math.max(size, 2)];
+        int half = size / 2;
+        if (half > 0) {
+            twiddles[half] = 1;
+            for (int j = 1; j < half; j++)
+                twiddles[half + j] = twiddles[half + j - 1] * root % prime;
+        }
+        for (half /= 2; half >= 1; half /= 2)
+            for (int j = 0; j < half; j++)
+                twiddles[half + j] = twiddles[2 * half + 2 * j];
+        if (montgomery != null)
+            for (int i = 1; i < size; i++)
+                twiddles[i] = montgomery.toMontgomery(twiddles[i]);
+        return twiddles;
+    }
+
+    private int[] bitReversal() {
+        int[] bitReversal = this.bitReversal;
+        if (bitReversal == null) {
+            bitReversal = new int[size];
+            int shift = 1 + Integer.numberOfLeadingZeros(size);
+            for (int i = 1; i < size; i++)
+                bitReversal[i] = Integer.reverse(i) >>> shift;
+            this.bitReversal = bitReversal;
+        }
+        return bitReversal;
+    }
+
+    private void bitReverse(long[] buffer) {
+        int[] bitReversal = bitReversal();
+        for (int i = 0; i < size; i++) {
+            int j = bitReversal[i];
+            if (j > i) {
+                long temp = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = temp;
+            }
+        }
+    }
+
+    //natural order in and out, values in [0, prime)
+    public void forward(long[] buffer) {
+        forwardBitReversed(buffer);
+        normalize(buffer);
+        bitReverse(buffer);
+    }
+
+    //natural order in and out, values in [0, prime), includes the division by size
+    public void inverse(long[] buffer) {
+        bitReverse(buffer);
+        inverseBitReversed(buffer);
+        scale(buffer, sizeInverse);
+    }
+
+    //largest block that fits into the cache, split further while there are too few blocks to keep every worker busy
+    private static int chooseBlockSize(int size, int parallelism) {
+        int blockSize = Math.min(size, cacheBlock);
+        if (parallelism > 1)
+            while (blockSize > minimumTaskSize && size / blockSize < 4 * parallelism)
+                blockSize /= 2;
+        return blockSize;
+    }
+
+    private void forEachTask(int tasks, IntConsumer task) {
+        if (parallel && tasks > 1)
+            IntStream.range(0, tasks).parallel().forEach(task);
+        else
+            for (int i = 0; i < tasks; i++)
+                task.accept(i);
+    }
+
+    //splits [0, count) into chunks of minimumTaskSize and hands every chunk's start to task
+    private void forEachChunk(int count, IntConsumer task) {
+        int chunk = Math.min(count, minimumTaskSize);
+        forEachTask(count / chunk, i -> task.accept(i * chunk));
+    }
+
+    //decimation in frequency, the output is in bit reversed order and only lazily reduced
+    void forwardBitReversed(long[] buffer) {
+        forward(buffer, 0, size);
+    }
+
+    //decimation in time from bit reversed order back to natural order, without any scaling
+    void inverseBitReversed(long[] buffer) {
+        inverse(buffer, 0, size);
+    }
+
+    //all stages with half < length on [offset, offset + length), from the outermost inwards
+    private void forward(long[] buffer, int offset, int length) {
+        if (length <= blockSize)
+            forwardBlock(buffer, offset);
+        else if (useRadix4 && length >= 4 * blockSize) {
+            int quarter = length / 4;
+            int chunk = Math.min(quarter, minimumTaskSize);
+            forEachChunk(quarter, first -> forwardRadix4(buffer, quarter, offset, first, first + chunk));
+            forEachTask(4, i -> forward(buffer, offset + i * quarter, quarter));
+        } else {
+            int half = length / 2;
+            int chunk = Math.min(half, minimumTaskSize);
+            forEachChunk(half, first -> forwardButterflies(buffer, half, offset, first, first + chunk));
+            forEachTask(2, i -> forward(buffer, offset + i * half, half));
+        }
+    }
+
+    //all stages with half < length on [offset, offset + length), from the innermost outwards
+    private void inverse(long[] buffer, int offset, int length) {
+        if (length <= blockSize)
+            inverseBlock(buffer, offset);
+        else if (useRadix4 && length >= 4 * blockSize) {
+            int quarter = length / 4;
+            int chunk = Math.min(quarter, minimumTaskSize);
+            forEachTask(4, i -> inverse(buffer, offset + i * quarter, quarter));
+            forEachChunk(quarter, first -> inverseRadix4(buffer, quarter, offset, first, first + chunk));
+        } else {
+            int half = length / 2;
+            int chunk = Math.min(half, minimumTaskSize);
+            forEachTask(2, i -> inverse(buffer, offset + i * half, half));
+            forEachChunk(half, first -> inverseButterflies(buffer, half, offset, first, first + chunk));
+        }
+    }
+
+    //stages with half < blockSize on the block starting at offset
+    private void forwardBlock(long[] buffer, int offset) {
+        int half = blockSize / 2;
+        if (useRadix4)
+            for (; half >= 2; half /= 4)
+                for (int start = offset; start < offset + blockSize; start += 2 * half)
+                    forwardRadix4(buffer, half / 2, start, 0, half / 2);
+        for (; half >= 1; half /= 2)
+            butterflies(buffer, half, offset / 2, (offset + blockSize) / 2, true);
+    }
+
+    private void inverseBlock(long[] buffer, int offset) {
+        int half = 1;
+        if (useRadix4)
+            for (; 4 * half <= blockSize; half *= 4)
+                for (int start = offset; start < offset + blockSize; start += 4 * half)
+                    inverseRadix4(buffer, half, start, 0, half);
+        for (; half < blockSize; half *= 2)
+            butterflies(buffer, half, offset / 2, (offset + blockSize) / 2, false);
+    }
+
+    //inverse of a buffer filled by pointwiseMultiply, pointwiseSquare or pointwisePow
+    void inverseProducts(long[] buffer) {
+        inverseBitReversed(buffer);
+        scale(buffer, productScale);
+    }
+
+    void pointwiseMultiply(long[] buffer, long[] multiplyWith) {
+        if (useVectorKernel)
+            VectorButterflies.pointwiseMultiply(buffer, multiplyWith, size, montgomery);
+        else if (montgomery != null)
+            for (int i = 0; i < size; i++)
+                buffer[i] = montgomery.multiply(buffer[i], multiplyWith[i]);
+        else
+            for (int i = 0; i < size; i++)
+                buffer[i] = buffer[i] * multiplyWith[i] % prime;
+    }
+
+    //buffer += multiplyA * multiplyB, with the same R^-1 factor as pointwiseMultiply
+    void pointwiseMultiplyAdd(long[] buffer, long[] multiplyA, long[] multiplyB) {
+        if (montgomery != null)
+            for (int i = 0; i < size; i++)
+                buffer[i] = montgomery.add(buffer[i], montgomery.multiply(multiplyA[i], multiplyB[i]));
+        else
+            for (int i = 0; i < size; i++)
+                buffer[i] = (buffer[i] + multiplyA[i] * multiplyB[i] % prime) % prime;
+    }
+
+    void pointwiseSquare(long[] buffer) {
+        pointwiseMultiply(buffer, buffer);
+    }
+
+    void pointwisePow(long[] buffer, long exponent) {
+        if (montgomery != null)
+            for (int i = 0; i < size; i++) {
+                long power = montgomery.pow(montgomery.toMontgomery(buffer[i]), exponent);
+                buffer[i] = montgomery.reduce(montgomery.reduce(power));
+            }
+        else
+            for (int i = 0; i < size; i++)
+                buffer[i] = pow(buffer[i], exponent);
+    }
+
+    private void normalize(long[] buffer) {
+        if (montgomery != null)
+            for (int i = 0; i < size; i++)
+                buffer[i] = montgomery.normalize(buffer[i]);
+    }
+
+    //multiplies by factor (in Montgomery form if that is used) and reduces into [0, prime)
+    private void scale(long[] buffer, long factor) {
+        if (montgomery != null)
+            for (int i = 0; i < size; i++)
+                buffer[i] = montgomery.normalize(montgomery.multiply(buffer[i], factor));
+        else
+            for (int i = 0; i < size; i++)
+                buffer[i] = buffer[i] * factor % prime;
+    }
+
+    //butterflies number from (inclusive) to to (exclusive) of the stage combining blocks of length 2 * half
+    private void butterflies(long[] buffer, int half, int from, int to, boolean forward) {
+        int butterfly = from;
+        while (butterfly < to) {
+            int first = butterfly & (half - 1);
+            int offset = 2 * (butterfly - first);
+            int last = Math.min(half, first + to - butterfly);
+            if (forward)
+                forwardButterflies(buffer, half, offset, first, last);
+            else
+                inverseButterflies(buffer, half, offset, first, last);
+            butterfly += last - first;
+        }
+    }
+
+    private void forwardButterflies(long[] buffer, int half, int offset, int first, int last) {
+        if (useVectorKernel && half >= VectorButterflies.lanes)
+            first = VectorButterflies.forward(buffer, twiddles, half, offset, first, last, montgomery);
+        if (montgomery != null)
+            for (int j = first, i = offset + first; j < last; j++, i++) {
+                long evenPart = buffer[i];
+                long oddPart = buffer[i + half];
+                buffer[i] = montgomery.add(evenPart, oddPart);
+                buffer[i + half] = montgomery.multiply(montgomery.subtract(evenPart, oddPart), twiddles[half + j]);
+            }
+        else
+            for (int j = first, i = offset + first; j < last; j++, i++) {
+                long evenPart = buffer[i];
+                long oddPart = buffer[i + half];
+                buffer[i] = (evenPart + oddPart) % prime;
+                buffer[i + half] = (evenPart + prime - oddPart) * twiddles[half + j] % prime;
+            }
+    }
+
+    private void inverseButterflies(long[] buffer, int half, int offset, int first, int last) {
+        if (useVectorKernel && half >= VectorButterflies.lanes)
+            first = VectorButterflies.inverse(buffer, inverseTwiddles, half, offset, first, last, montgomery);
+        if (montgomery != null)
+            for (int j = first, i = offset + first; j < last; j++, i++) {
+                long evenPart = buffer[i];
+                long oddPart = montgomery.multiply(buffer[i + half], inverseTwiddles[half + j]);
+                buffer[i] = montgomery.add(evenPart, oddPart);
+                buffer[i + half] = montgomery.subtract(evenPart, oddPart);
+            }
+        else
+            for (int j = first, i = offset + first; j < last; j++, i++) {
+                long evenPart = buffer[i];
+                long oddPart = buffer[i + half] * inverseTwiddles[half + j] % prime;
+                buffer[i] = (evenPart + oddPart) % prime;
+                buffer[i + half] = (evenPart + prime - oddPart) % prime;
+            }
+    }
+
+    //the two decimation in frequency stages with half 2 * quarter and quarter on the block of length 4 * quarter at offset, fused,
+    //restricted to the positions j in [first, last) of the first quarter
+    private void forwardRadix4(long[] buffer, int quarter, int offset, int first, int last) {
+        for (int j = first, i = offset + first; j < last; j++, i++) {
+            long a0 = buffer[i];
+            long a1 = buffer[i + quarter];
+            long a2 = buffer[i + 2 * quarter];
+            long a3 = buffer[i + 3 * quarter];
+            long b0 = montgomery.add(a0, a2);
+            long b1 = montgomery.add(a1, a3);
+            long b2 = montgomery.multiply(montgomery.subtract(a0, a2), twiddles[2 * quarter + j]);
+            long b3 = montgomery.multiply(montgomery.subtract(a1, a3), twiddles[3 * quarter + j]);
+            long twiddle = twiddles[quarter + j];
+            buffer[i] = montgomery.add(b0, b1);
+            buffer[i + quarter] = montgomery.multiply(montgomery.subtract(b0, b1), twiddle);
+            buffer[i + 2 * quarter] = montgomery.add(b2, b3);
+            buffer[i + 3 * quarter] = montgomery.multiply(montgomery.subtract(b2, b3), twiddle);
+        }
+    }
+
+    //the two decimation in time stages with half quarter and 2 * quarter on the block of length 4 * quarter at offset, fused,
+    //restricted to the positions j in [first, last) of the first quarter
+    private void inverseRadix4(long[] buffer, int quarter, int offset, int first, int last) {
+        for (int j = first, i = offset + first; j < last; j++, i++) {
+            long twiddle = inverseTwiddles[quarter + j];
+            long a0 = buffer[i];
+            long a1 = montgomery.multiply(buffer[i + quarter], twiddle);
+            long a2 = buffer[i + 2 * quarter];
+            long a3 = montgomery.multiply(buffer[i + 3 * quarter], twiddle);
+            long b0 = montgomery.add(a0, a1);
+            long b1 = montgomery.subtract(a0, a1);
+            long b2 = montgomery.multiply(montgomery.add(a2, a3), inverseTwiddles[2 * quarter + j]);
+            long b3 = montgomery.multiply(montgomery.subtract(a2, a3), inverseTwiddles[3 * quarter + j]);
+            buffer[i] = montgomery.add(b0, b2);
+            buffer[i + 2 * quarter] = montgomery.subtract(b0, b2);
+            buffer[i + quarter] = montgomery.add(b1, b3);
+            buffer[i + 3 * quarter] = montgomery.subtract(b1, b3);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.jr576.utils;
+
+import java.util.Arrays;
+
+//Relaxed convolution c = a * b modulo the prime of an FFT where a and b arrive one coefficient at a time:
+//push(a_i, b_i) returns c_i right away, so a_{i+1} and b_{i+1} may depend on c_0, ..., c_i (e.g. push(f_i, f_i) for f * f).
+//The pairs (j, k) with j, k >= 1 are split into the squares [p, 2p)^2 and the rectangles [p, 2p) x [mp, (m+1)p), m >= 2,
+//plus their transposes, for every power of two p. Each block is multiplied as soon as its last coefficient arrives and
+//only contributes to coefficients that are not returned yet, which gives O(n log^2 n) in total.
+//The transforms of a[p, 2p) and b[p, 2p) are kept and reused by every rectangle of width p.
+public class OnlineConvolution {
+    private static final int naiveBreakpoint = 32;
+    private final FFT fft;
+    private final long prime;
+    private long[] a = new long[16];
+    private long[] b = new long[16];
+    private long[] c = new long[32];
+    private int count;
+    private final long[][] transformedA = new long[31][]; //index log2(p), transform of a[p, 2p) of size 2p
+    private final long[][] transformedB = new long[31][];
+
+    public OnlineConvolution(FFT fft) {
+        this.fft = fft;
+        this.prime = fft.prime;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    //c_index for an index that has been pushed already
+    public long get(int index) {
+        if (index >= count)
+            throw new IndexOutOfBoundsException("Coefficient " + index + " is not determined yet.");
+        return c[index];
+    }
+
+    public long push(long valueA, long valueB) {
+        int index = count;
+        if (index == a.length) {
+            a = Arrays.copyOf(a, 2 * a.length);
+            b = Arrays.copyOf(b, 2 * b.length);
+        }
+        if (2 * index + 2 > c.length)
+            c = Arrays.copyOf(c, 2 * c.length);
+        a[index] = Math.floorMod(valueA, prime);
+        b[index] = Math.floorMod(valueB, prime);
+        count++;
+        if (index == 0)
+            c[0] = a[0] * b[0] % prime;
+        else
+            c[index] = (c[index] + a[index] * b[0] % prime + a[0] * b[index]) % prime;
+        for (int p = 1; 2 * p <= count && count % p == 0; p *= 2)
+            addBlock(p, count / p - 1);
+        return c[index];
+    }
+
+    //block of width p ending at the coefficient just pushed, it contributes to c[count, count + 2p - 1)
+    private void addBlock(int p, int m) {
+        int start = m * p;
+        if (p <= naiveBreakpoint) {
+            for (int x = 0; x < p; x++)
+                for (int y = 0; y < p; y++) {
+                    long term = a[p + x] * b[start + y] % prime;
+                    if (m > 1)
+                        term += b[p + x] * a[start + y] % prime;
+                    c[count + x + y] = (c[count + x + y] + term) % prime;
+                }
+            return;
+        }
+        int size = 2 * p;
+        NttPlan plan = fft.plan(size);
+        int logP = Integer.numberOfTrailingZeros(p);
+        long[] product;
+        if (m == 1) {
+            long[] blockA = new long[size];
+            long[] blockB = new long[size];
+            System.arraycopy(a, p, blockA, 0, p);
+            System.arraycopy(b, p, blockB, 0, p);
+            plan.forwardBitReversed(blockA);
+            plan.forwardBitReversed(blockB);
+            transformedA[logP] = blockA;
+            transformedB[logP] = blockB;
+            product = blockA.clone();
+            plan.pointwiseMultiply(product, blockB);
+        } else {
+            product = new long[size];
+            long[] other = new long[size];
+            System.arraycopy(a, start, other, 0, p);
+            System.arraycopy(b, start, product, 0, p);
+            plan.forwardBitReversed(product);
+            plan.forwardBitReversed(other);
+            plan.pointwiseMultiply(product, transformedA[logP]);
+            plan.pointwiseMultiplyAdd(product, other, transformedB[logP]);
+        }
+        plan.inverseProducts(product);
+        for (int r = 0; r < size - 1; r++)
+            c[count + r] = (c[count + r] + product[r]) % prime;
+    }
+}
@@ -0,0 +1,151 @@
+package io.jr576.utils;
+
+import java.util.Arrays;
+
+//BinaryIndexedTree that keeps every earlier state. Version 0 is the empty tree and every add or addMod makes a new version.
+//An update does not copy the tree: each of the log n cells it changes appends (version, new value) to the history of that cell,
+//a pair of growing primitive arrays per cell, so the memory is O(updates * log n). getSum(index, version) reads every cell of
+//its walk as of the version by a binary search in the history, O(log n * log V). The current cells are also kept flat in live,
+//so queries on the newest version cost the same as in BinaryIndexedTree.
+//A Snapshot is only the tree and a version number, taking one is O(1) and it shares everything with the live tree.
+public class PersistentBinaryIndexedTree {
+    public final int upperbound;
+    private final long[] live;
+    private final int[][] versions;
+    private final long[][] values;
+    private final int[] counts;
+    private int version;
+
+    public PersistentBinaryIndexedTree(int upperbound) {
+        this.upperbound = upperbound;
+        this.live = new long[upperbound + 1];
+        this.versions = new int[upperbound + 1][];
+        this.values = new long[upperbound + 1][];
+        this.counts = new int[upperbound + 1];
+    }
+
+    //the version of the current state, the number of updates so far
+    public int version() {
+        return version;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(version);
+    }
+
+    private void record(int index, long value) {
+        int count = counts[index];
+        if (count == 0) {
+            versions[index] = new int[2];
+            values[index] = new long[2];
+        } else if (count == versions[index].length) {
+            versions[index] = Arrays.copyOf(versions[index], 2 * count);
+            values[index] = Arrays.copyOf(values[index], 2 * count);
+        }
+        versions[index][count] = version;
+        values[index][count] = value;
+        counts[index] = count + 1;
+        live[index] = value;
+    }
+
+    //the cell as of the given version, the last entry of its history at or before it
+    private long cell(int index, int version) {
+        int[] history = versions[index];
+        int low = 0, high = counts[index];
+        if (high == 0)
+            return 0;
+        if (history[high - 1] <= version)
+            return live[index];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (history[middle] <= version)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low == 0 ? 0 : values[index][low - 1];
+    }
+
+    private void checkVersion(int version) {
+        if (version < 0 || version > this.version)
+            throw new IllegalArgumentException("Version " + version + " does not exist yet.");
+    }
+
+    public void add(int index, long val) {
+        if (++version < 0)
+            throw new ArithmeticException("Too many versions.");
+        while (index <= upperbound) {
+            record(index, live[index] + val);
+            index += Integer.lowestOneBit(index);
+        }
+    }
+
+    public void addMod(int index, long val, long mod) {
+        if (++version < 0)
+            throw new ArithmeticException("Too many versions.");
+        while (index <= upperbound) {
+            record(index, (live[index] + val) % mod);
+            index += Integer.lowestOneBit(index);
+        }
+    }
+
+    public long getSum(int index) {
+        long sum = 0;
+        while (index > 0) {
+            sum += live[index];
+            index -= Integer.lowestOneBit(index);
+        }
+        return sum;
+    }
+
+    public long getSumMod(int index, long mod) {
+        long sum = 0;
+        while (index > 0) {
+            sum = (sum + live[index]) % mod;
+            index -= Integer.lowestOneBit(index);
+        }
+        return sum;
+    }
+
+    public long getSum(int index, int version) {
+        checkVersion(version);
+        long sum = 0;
+        while (index > 0) {
+            sum += cell(index, version);
+            index -= Integer.lowestOneBit(index);
+        }
+        return sum;
+    }
+
+    public long getSumMod(int index, int version, long mod) {
+        checkVersion(version);
+        long sum = 0;
+        while (index > 0) {
+            sum = (sum + cell(index, version)) % mod;
+            index -= Integer.lowestOneBit(index);
+        }
+        return sum;
+    }
+
+    //read only view of the tree at a fixed version, unaffected by later updates
+    public final class Snapshot {
+        public final int version;
+
+        private Snapshot(int version) {
+            this.version = version;
+        }
+
+        public long getSum(int index) {
+            return PersistentBinaryIndexedTree.this.getSum(index, version);
+        }
+
+        public long getSumMod(int index, long mod) {
+            return PersistentBinaryIndexedTree.this.getSumMod(index, version, mod);
+        }
+
+        //sum over [first, last]
+        public long getSum(int first, int last) {
+            return getSum(last) - getSum(first - 1);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.jr576.utils;
+
+import java.util.Arrays;
+
+//Truncated power series modulo the prime of an FFT. Every operation returns exactly n coefficients and costs O(n log n),
+//the Newton iterations double the precision in each step. Coefficients are expected in [0, prime) and n has to be
+//smaller than the prime, log/exp/pow divide by 1, ..., n - 1.
+public class PowerSeries {
+    private final FFT fft;
+    private final long prime;
+
+    public PowerSeries(FFT fft) {
+        this.fft = fft;
+        this.prime = fft.prime;
+    }
+
+    public PowerSeries(int prime) {
+        this(new FFT(prime));
+    }
+
+    private long pow(long base, long exponent) {
+        long result = 1;
+        base %= prime;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = result * base % prime;
+            base = base * base % prime;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private static long coefficient(long[] pol, int index) {
+        return index < pol.length ? pol[index] : 0;
+    }
+
+    //inverses[i] = i^-1 for 1 <= i < n
+    private long[] inverses(int n) {
+        long[] inverses = new long[Math.max(n, 2)];
+        inverses[1] = 1;
+        for (int i = 2; i < n; i++)
+            inverses[i] = (prime - prime / i) * inverses[(int) (prime % i)] % prime;
+        return inverses;
+    }
+
+    //copies the first size coefficients of pol into buffer and zeroes the rest up to size
+    private static void load(long[] pol, long[] buffer, int size) {
+        int length = Math.min(pol.length, size);
+        System.arraycopy(pol, 0, buffer, 0, length);
+        Arrays.fill(buffer, length, size, 0);
+    }
+
+    //coefficients [m, 2m) of low * high, where only the first m coefficients of low and the coefficients [m, 2m) of high count.
+    //A cyclic convolution of size 2m suffices since the wrap around only pollutes [0, m).
+    private long[] upperHalfProduct(long[] low, long[] high, int m) {
+        int size = 2 * m;
+        NttPlan plan = fft.plan(size);
+        long[] bufferLow = new long[size];
+        long[] bufferHigh = new long[size];
+        load(low, bufferLow, m);
+        System.arraycopy(high, m, bufferHigh, m, m);
+        plan.forwardBitReversed(bufferLow);
+        plan.forwardBitReversed(bufferHigh);
+        plan.pointwiseMultiply(bufferHigh, bufferLow);
+        plan.inverseProducts(bufferHigh);
+        return bufferHigh;
+    }
+
+    public long[] inverse(long[] pol, int n) {
+        if (n == 0)
+            return new long[0];
+        long constant = coefficient(pol, 0);
+        if (constant == 0)
+            throw new ArithmeticException("Series with constant term 0 is not invertible.");
+        int maxSize = FFT.largerTwoPow(n);
+        long[] inverse = new long[maxSize];
+        long[] bufferPol = new long[maxSize];
+        long[] bufferInverse = new long[maxSize];
+        inverse[0] = pow(constant, prime - 2);
+        for (int m = 1; m < n; m *= 2) {
+            int size = 2 * m;
+            NttPlan plan = fft.plan(size);
+            load(pol, bufferPol, size);
+            load(inverse, bufferInverse, m);
+            plan.forwardBitReversed(bufferPol);
+            plan.forwardBitReversed(bufferInverse);
+            //pol * inverse is 1 on [0, m), only the middle part [m, 2m) is needed for the correction
+            plan.pointwiseMultiply(bufferPol, bufferInverse);
+            plan.inverseProducts(bufferPol);
+            Arrays.fill(bufferPol, 0, m, 0);
+            plan.forwardBitReversed(bufferPol);
+            plan.pointwiseMultiply(bufferPol, bufferInverse);
+            plan.inverseProducts(bufferPol);
+            for (int i = m; i < size; i++)
+                inverse[i] = bufferPol[i] == 0 ? 0 : prime - bufferPol[i];
+        }
+        return Arrays.copyOf(inverse, n);
+    }
+
+    //requires constant term 1
+    public long[] log(long[] pol, int n) {
+        if (n == 0)
+            return new long[0];
+        if (coefficient(pol, 0) != 1)
+            throw new IllegalArgumentException("Constant term must be 1.");
+        long[] derivative = new long[Math.max(n - 1, 1)];
+        for (int i = 1; i < Math.min(n, pol.length); i++)
+            derivative[i - 1] = pol[i] * i % prime;
+        long[] quotient = new long[n];
+        fft.multiply(derivative, inverse(pol, n), quotient);
+        long[] inverses = inverses(n);
+        long[] log = new long[n];
+        for (int i = 1; i < n; i++)
+            log[i] = quotient[i - 1] * inverses[i] % prime;
+        return log;
+    }
+
+    //requires constant term 0
+    public long[] exp(long[] pol, int n) {
+        if (n == 0)
+            return new long[0];
+        if (coefficient(pol, 0) != 0)
+            throw new IllegalArgumentException("Constant term must be 0.");
+        long[] exp = new long[FFT.largerTwoPow(n)];
+        exp[0] = 1;
+        for (int m = 1; m < n; m *= 2) {
+            //exp <- exp * (1 + pol - log(exp)), where pol - log(exp) vanishes on [0, m)
+            long[] log = log(exp, 2 * m);
+            long[] difference = new long[2 * m];
+            for (int i = m; i < 2 * m; i++)
+                difference[i] = Math.floorMod(coefficient(pol, i) - log[i], prime);
+            long[] correction = upperHalfProduct(exp, difference, m);
+            System.arraycopy(correction, m, exp, m, m);
+        }
+        return Arrays.copyOf(exp, n);
+    }
+
+    //requires the constant term to be a non-zero quadratic residue, the root with the smaller constant term is returned
+    public long[] sqrt(long[] pol, int n) {
+        if (n == 0)
+            return new long[0];
+        long[] sqrt = new long[FFT.largerTwoPow(n)];
+        sqrt[0] = squareRoot(coefficient(pol, 0));
+        long half = (prime + 1) / 2;
+        for (int m = 1; m < n; m *= 2) {
+            //sqrt <- (sqrt + pol / sqrt) / 2, which only changes [m, 2m)
+            long[] quotient = new long[2 * m];
+            fft.multiply(Arrays.copyOf(pol, Math.min(pol.length, 2 * m)), inverse(sqrt, 2 * m), quotient);
+            for (int i = m; i < 2 * m; i++)
+                sqrt[i] = quotient[i] * half % prime;
+        }
+        return Arrays.copyOf(sqrt, n);
+    }
+
+    //pol^exponent via exp(exponent * log(pol)), the cost does not depend on the exponent
+    public long[] pow(long[] pol, long exponent, int n) {
+        if (exponent < 0)
+            throw new IllegalArgumentException("Exponent must be non-negative, use inverse for negative powers.");
+        if (n == 0)
+            return new long[0];
+        long[] power = new long[n];
+        if (exponent == 0) {
+            power[0] = 1;
+            return power;
+        }
+        int shift = 0;
+        while (shift < pol.length && shift < n && pol[shift] == 0)
+            shift++;
+        if (shift == n || shift == pol.length || (shift > 0 && exponent >= (n + shift - 1) / shift))
+            return power;
+        int powerShift = (int) (shift * exponent);
+        int length = n - powerShift;
+        long constant = pol[shift];
+        long constantInverse = pow(constant, prime - 2);
+        long[] normalized = new long[length];
+        for (int i = 0; i < length && shift + i < pol.length; i++)
+            normalized[i] = pol[shift + i] * constantInverse % prime;
+        long[] log = log(normalized, length);
+        long exponentMod = exponent % prime;
+        for (int i = 0; i < length; i++)
+            log[i] = log[i] * exponentMod % prime;
+        long[] exp = exp(log, length);
+        long constantPower = pow(constant, exponent);
+        for (int i = 0; i < length; i++)
+            power[powerShift + i] = exp[i] * constantPower % prime;
+        return power;
+    }
+
+    //Tonelli-Shanks
+    private long squareRoot(long value) {
+        if (value == 0 || pow(value, (prime - 1) / 2) != 1)
+            throw new IllegalArgumentException("Constant term must be a non-zero quadratic residue.");
+        int twoPower = Long.numberOfTrailingZeros(prime - 1);
+        long oddPart = (prime - 1) >> twoPower;
+        long nonResidue = 2;
+        while (pow(nonResidue, (prime - 1) / 2) != prime - 1)
+            nonResidue++;
+        long rootOfUnity = pow(nonResidue, oddPart);
+        long error = pow(value, oddPart);
+        long root = pow(value, (oddPart + 1) / 2);
+        while (error != 1) {
+            int order = 0;
+            for (long square = error; square != 1; square = square * square % prime)
+                order++;
+            long correction = rootOfUnity;
+            for (int i = 0; i < twoPower - order - 1; i++)
+                correction = correction * correction % prime;
+            root = root * correction % prime;
+            rootOfUnity = correction * correction % prime;
+            error = error * rootOfUnity % prime;
+            twoPower = order;
+        }
+        return Math.min(root, prime - root);
+    }
+}
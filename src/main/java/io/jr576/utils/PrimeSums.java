@@ -0,0 +1,236 @@
+package io.jr576.utils;
+
+import java.math.BigInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//Prime power sums for every quotient of a Dirichlet: get(q) = sum over primes p <= q of p^exponent.
+//The sums are taken modulo mod, the methods without mod wrap around modulo 2^64 (exact as long as the sums fit into a long).
+//The Lucy_Hedgehog sieve starts with S(v) = sum_{2 <= i <= v} i^exponent and every prime p <= sqrt(n) removes the numbers
+//with smallest prime factor p, S(v) -= p^exponent * (S(v / p) - S(p - 1)) for v >= p^2, in O(n^(3/4) / log n).
+//The Fenwick variant sieves all integers up to limit ~ n^(2/3) directly and answers S(v / p) <= limit from a BinaryIndexedTree,
+//so every prime only sweeps the few quotients above limit, O(n^(2/3)) up to logarithmic factors but O(limit) memory.
+//Within a sweep the large quotients n / d are updated in stages d in [lo, lo * p): the stage only reads n / (d * p) with
+//d * p >= lo * p, which has not been updated yet, so each stage runs in parallel.
+public class PrimeSums {
+    private static final int parallelBreakpoint = 1 << 12;
+
+    public static Dirichlet primeCount(long upperbound) {
+        return lucy(upperbound, 0, 0);
+    }
+
+    public static Dirichlet primePowerSum(long upperbound, int exponent) {
+        return lucy(upperbound, exponent, 0);
+    }
+
+    public static Dirichlet primePowerSumMod(long upperbound, int exponent, long mod) {
+        checkMod(mod);
+        return lucy(upperbound, exponent, mod);
+    }
+
+    public static Dirichlet primeCountFenwick(long upperbound) {
+        return fenwick(upperbound, 0, 0);
+    }
+
+    public static Dirichlet primePowerSumFenwick(long upperbound, int exponent) {
+        return fenwick(upperbound, exponent, 0);
+    }
+
+    public static Dirichlet primePowerSumModFenwick(long upperbound, int exponent, long mod) {
+        checkMod(mod);
+        return fenwick(upperbound, exponent, mod);
+    }
+
+    private static void checkMod(long mod) {
+        if (mod < 1 || mod > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Modulus must be in [1, 2^31).");
+    }
+
+    //mod == 0 stands for 2^64 in all helpers
+    private static long power(long base, int exponent, long mod) {
+        long result = mod == 1 ? 0 : 1;
+        if (mod != 0)
+            base %= mod;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = mod == 0 ? result * base : result * base % mod;
+            base = mod == 0 ? base * base : base * base % mod;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private static long reduce(BigInteger value, long mod) {
+        return mod == 0 ? value.longValue() : value.mod(BigInteger.valueOf(mod)).longValue();
+    }
+
+    //sum_{2 <= i <= v} i^exponent, via sum_{1 <= i <= v} i^k = sum_j S(k, j) j! C(v + 1, j + 1) with Stirling numbers of the second kind
+    private static long powerSumFromTwo(long v, int exponent, long mod, BigInteger[] stirlingFactorials) {
+        if (v < 2)
+            return 0;
+        if (exponent == 0)
+            return mod == 0 ? v - 1 : (v - 1) % mod;
+        if (exponent == 1) {
+            long even = v % 2 == 0 ? v / 2 : (v + 1) / 2;
+            long odd = v % 2 == 0 ? v + 1 : v;
+            return mod == 0 ? even * odd - 1 : Math.floorMod(even % mod * (odd % mod) - 1, mod);
+        }
+        BigInteger sum = BigInteger.ZERO;
+        BigInteger binomial = BigInteger.valueOf(v + 1);
+        for (int j = 1; j <= exponent; j++) {
+            binomial = binomial.multiply(BigInteger.valueOf(v + 1 - j)).divide(BigInteger.valueOf(j + 1));
+            sum = sum.add(stirlingFactorials[j].multiply(binomial));
+        }
+        return reduce(sum.subtract(BigInteger.ONE), mod);
+    }
+
+    //S(k, j) * j! for j <= k
+    private static BigInteger[] stirlingFactorials(int exponent) {
+        BigInteger[] stirling = new BigInteger[exponent + 1];
+        stirling[0] = BigInteger.ONE;
+        for (int k = 1; k <= exponent; k++) {
+            BigInteger[] next = new BigInteger[exponent + 1];
+            next[0] = BigInteger.ZERO;
+            for (int j = 1; j <= k; j++) {
+                BigInteger previous = j < k ? stirling[j] : BigInteger.ZERO;
+                next[j] = previous.multiply(BigInteger.valueOf(j)).add(stirling[j - 1]);
+            }
+            stirling = next;
+        }
+        BigInteger factorial = BigInteger.ONE;
+        for (int j = 1; j <= exponent; j++) {
+            factorial = factorial.multiply(BigInteger.valueOf(j));
+            stirling[j] = stirling[j].multiply(factorial);
+        }
+        return stirling;
+    }
+
+    static boolean[] smallPrimes(int upperbound) {
+        boolean[] isPrime = new boolean[upperbound + 1];
+        for (int i = 2; i <= upperbound; i++)
+            isPrime[i] = true;
+        for (long p = 2; p * p <= upperbound; p++)
+            if (isPrime[(int) p])
+                for (long multiple = p * p; multiple <= upperbound; multiple += p)
+                    isPrime[(int) multiple] = false;
+        return isPrime;
+    }
+
+    //initial sums for the indices in [from, values.length)
+    private static void initialize(Dirichlet sums, int from, int exponent, long mod) {
+        BigInteger[] stirlingFactorials = stirlingFactorials(exponent);
+        IntStream.range(from, sums.values.length)
+                 .parallel()
+                 .forEach(i -> sums.values[i] = powerSumFromTwo(sums.quotients[i], exponent, mod, stirlingFactorials));
+    }
+
+    //value - weight * (read - below)
+    private static long update(long value, long weight, long read, long below, long mod) {
+        if (mod == 0)
+            return value - weight * (read - below);
+        long difference = read - below;
+        if (difference < 0)
+            difference += mod;
+        long result = value - weight * difference % mod;
+        return result < 0 ? result + mod : result;
+    }
+
+    //runs task on every stage [lo, min(lo * prime, last + 1)) of [1, last], one stage after the other
+    static void forEachStage(int last, long prime, IntConsumer task) {
+        for (long lo = 1; lo <= last; lo *= prime) {
+            int from = (int) lo;
+            int to = (int) Math.min(lo * prime, last + 1L);
+            if (to - from >= parallelBreakpoint)
+                IntStream.range(from, to).parallel().forEach(task);
+            else
+                for (int d = from; d < to; d++)
+                    task.accept(d);
+        }
+    }
+
+    private static Dirichlet lucy(long upperbound, int exponent, long mod) {
+        Dirichlet sums = new Dirichlet(upperbound);
+        long[] values = sums.values;
+        int sqrt = sums.upperboundSqrt;
+        int length = values.length;
+        int largeCount = length - 1 - sqrt; //large quotients are n / d at index length - d for d <= largeCount
+        initialize(sums, 1, exponent, mod);
+        boolean[] isPrime = smallPrimes(sqrt);
+        for (int p = 2; p <= sqrt; p++) {
+            if (!isPrime[p])
+                continue;
+            int prime = p;
+            long weight = power(p, exponent, mod);
+            long below = values[p - 1];
+            long square = (long) p * p;
+            int lastLarge = (int) Math.min(largeCount, upperbound / square);
+            forEachStage(lastLarge, p, d -> {
+                long dp = (long) d * prime;
+                long read = dp <= largeCount ? values[(int) (length - dp)] : values[(int) (upperbound / dp)];
+                values[length - d] = update(values[length - d], weight, read, below, mod);
+            });
+            for (long v = sqrt; v >= square; v--)
+                values[(int) v] = update(values[(int) v], weight, values[(int) (v / p)], below, mod);
+        }
+        return sums;
+    }
+
+    //about n^(2/3) / log(n)^(2/3), at least sqrt(n)
+    private static int fenwickLimit(long upperbound, int sqrt) {
+        double log = Math.max(1, Math.log(upperbound));
+        double limit = Math.pow(upperbound, 2.0 / 3) / Math.pow(log, 2.0 / 3);
+        return (int) Math.min(upperbound, Math.max(sqrt, Math.min(limit, Integer.MAX_VALUE - 8)));
+    }
+
+    private static Dirichlet fenwick(long upperbound, int exponent, long mod) {
+        Dirichlet sums = new Dirichlet(upperbound);
+        long[] values = sums.values;
+        int sqrt = sums.upperboundSqrt;
+        int length = values.length;
+        int limitIndex = sums.quotientToIndex(fenwickLimit(upperbound, sqrt));
+        int limit = (int) sums.quotients[limitIndex]; //rounded to a quotient, so that n / (d * p) > limit exactly for d * p <= largeCount
+        int firstLarge = limitIndex + 1;
+        int largeCount = length - firstLarge;
+        initialize(sums, firstLarge, exponent, mod);
+        long[] weights = new long[limit + 1];
+        IntStream.rangeClosed(2, limit).parallel().forEach(i -> weights[i] = power(i, exponent, mod));
+        //linear time construction of the tree over the weights of the integers in [2, limit]
+        BinaryIndexedTree tree = mod == 0 ? new BinaryIndexedTree(weights) : new BinaryIndexedTree(weights, mod);
+        boolean[] composite = new boolean[limit + 1];
+        long below = 0;
+        for (int p = 2; p <= sqrt; p++) {
+            if (composite[p])
+                continue;
+            int prime = p;
+            long weight = weights[p];
+            long belowPrime = below;
+            long square = (long) p * p;
+            int lastLarge = (int) Math.min(largeCount, upperbound / square);
+            forEachStage(lastLarge, p, d -> {
+                long dp = (long) d * prime;
+                long read = dp <= largeCount ? values[(int) (length - dp)]
+                            : mod == 0 ? tree.getSum((int) (upperbound / dp)) : tree.getSumMod((int) (upperbound / dp), mod);
+                values[length - d] = update(values[length - d], weight, read, belowPrime, mod);
+            });
+            for (long multiple = square; multiple <= limit; multiple += p)
+                if (!composite[(int) multiple]) {
+                    composite[(int) multiple] = true;
+                    if (mod == 0)
+                        tree.add((int) multiple, -weights[(int) multiple]);
+                    else
+                        tree.addMod((int) multiple, mod - weights[(int) multiple], mod);
+                }
+            below = mod == 0 ? below + weight : (below + weight) % mod;
+        }
+        //the quotients up to limit are plain prefix sums over the primes
+        long sum = 0;
+        int index = 1;
+        for (int i = 1; i <= limit && index < firstLarge; i++) {
+            if (i >= 2 && !composite[i])
+                sum = mod == 0 ? sum + weights[i] : (sum + weights[i]) % mod;
+            if (sums.quotients[index] == i)
+                values[index++] = sum;
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,63 @@
+package io.jr576.utils;
+
+//Range add and range sum on top of two BinaryIndexedTrees. Adding v to [first, last] changes the point values by a step
+//function, so with slopes holding +v at first and -v at last + 1, the prefix sum up to i is i * slopes(i) - offsets(i)
+//when offsets holds v * (first - 1) at first and -v * last at last + 1. Every operation is O(log n).
+//The Mod methods keep both trees reduced to [0, mod) and, like BinaryIndexedTree, assume mod < 2^31.
+public class RangeBinaryIndexedTree {
+    public final int upperbound;
+    private final BinaryIndexedTree slopes;
+    private final BinaryIndexedTree offsets;
+
+    public RangeBinaryIndexedTree(int upperbound) {
+        this.upperbound = upperbound;
+        this.slopes = new BinaryIndexedTree(upperbound);
+        this.offsets = new BinaryIndexedTree(upperbound);
+    }
+
+    //adds val to every index in [first, last]
+    public void add(int first, int last, long val) {
+        slopes.add(first, val);
+        offsets.add(first, val * (first - 1));
+        if (last < upperbound) {
+            slopes.add(last + 1, -val);
+            offsets.add(last + 1, -val * last);
+        }
+    }
+
+    public void add(int index, long val) {
+        add(index, index, val);
+    }
+
+    //sum of the values at [1, index]
+    public long getSum(int index) {
+        return slopes.getSum(index) * index - offsets.getSum(index);
+    }
+
+    //sum of the values at [first, last]
+    public long getSum(int first, int last) {
+        return getSum(last) - getSum(first - 1);
+    }
+
+    public void addMod(int first, int last, long val, long mod) {
+        val = Math.floorMod(val, mod);
+        slopes.addMod(first, val, mod);
+        offsets.addMod(first, val * ((first - 1) % mod) % mod, mod);
+        if (last < upperbound) {
+            slopes.addMod(last + 1, (mod - val) % mod, mod);
+            offsets.addMod(last + 1, (mod - val * (last % mod) % mod) % mod, mod);
+        }
+    }
+
+    public void addMod(int index, long val, long mod) {
+        addMod(index, index, val, mod);
+    }
+
+    public long getSumMod(int index, long mod) {
+        return Math.floorMod(slopes.getSumMod(index, mod) * (index % mod) - offsets.getSumMod(index, mod), mod);
+    }
+
+    public long getSumMod(int first, int last, long mod) {
+        return Math.floorMod(getSumMod(last, mod) - getSumMod(first - 1, mod), mod);
+    }
+}
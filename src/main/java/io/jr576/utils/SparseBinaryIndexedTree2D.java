@@ -0,0 +1,128 @@
+package io.jr576.utils;
+
+import java.util.Arrays;
+
+//2D BinaryIndexedTree over points fixed in advance, for large coordinates and up to millions of points.
+//The x coordinates of the points are compressed to 1...X. Node i of the outer tree covers the x ranks (i - lowbit(i), i]
+//and holds the sorted distinct y ranks of the points in that range together with an inner tree over them. Every point
+//appears in O(log n) nodes, so all nodes together take O(n log n) memory, kept in flat arrays: the y ranks of node i are
+//yRanks[start[i] ... start[i + 1]) and its inner tree is binaryIndexedTree over the same positions.
+//add and getSum walk O(log n) nodes with a binary search in each, O(log^2 n).
+public class SparseBinaryIndexedTree2D {
+    private final long[] xValues;
+    private final long[] yValues;
+    private final long[] points; //distinct yRank << 32 | xRank + 1, sorted
+    private final int[] start;
+    private final int[] yRanks;
+    private final long[] binaryIndexedTree;
+
+    //the points (xs[i], ys[i]) that will be updated, duplicates are fine
+    public SparseBinaryIndexedTree2D(long[] xs, long[] ys) {
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("Coordinates must have the same length.");
+        xValues = distinctSorted(xs);
+        yValues = distinctSorted(ys);
+        int nodes = xValues.length;
+        //the points ordered by y rank, so every node receives its y ranks in sorted order
+        long[] order = new long[xs.length];
+        for (int i = 0; i < xs.length; i++)
+            order[i] = (long) Arrays.binarySearch(yValues, ys[i]) << 32 | (Arrays.binarySearch(xValues, xs[i]) + 1);
+        Arrays.sort(order);
+        points = distinctSorted(order);
+        start = new int[nodes + 2];
+        int[] last = new int[nodes + 1];
+        Arrays.fill(last, -1);
+        for (long point : order)
+            for (int i = (int) point; i <= nodes; i += Integer.lowestOneBit(i))
+                if (last[i] != (int) (point >>> 32)) {
+                    last[i] = (int) (point >>> 32);
+                    start[i + 1]++;
+                }
+        for (int i = 1; i < start.length; i++)
+            start[i] += start[i - 1];
+        yRanks = new int[start[nodes + 1]];
+        binaryIndexedTree = new long[yRanks.length];
+        int[] fill = Arrays.copyOf(start, nodes + 1);
+        Arrays.fill(last, -1);
+        for (long point : order)
+            for (int i = (int) point; i <= nodes; i += Integer.lowestOneBit(i))
+                if (last[i] != (int) (point >>> 32)) {
+                    last[i] = (int) (point >>> 32);
+                    yRanks[fill[i]++] = last[i];
+                }
+    }
+
+    private static long[] distinctSorted(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[distinct++] = sorted[i];
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    //number of entries of sorted that are < value, or <= value if inclusive
+    private static int count(long[] sorted, long value, boolean inclusive) {
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value || inclusive && sorted[middle] == value)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private int countBelow(int node, int yRank) {
+        int low = start[node], high = start[node + 1];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (yRanks[middle] < yRank)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low - start[node];
+    }
+
+    //(x, y) has to be one of the points given to the constructor
+    public void add(long x, long y, long val) {
+        int xRank = Arrays.binarySearch(xValues, x);
+        int yRank = Arrays.binarySearch(yValues, y);
+        if (xRank < 0 || yRank < 0 || Arrays.binarySearch(points, (long) yRank << 32 | (xRank + 1)) < 0)
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is not one of the points of the tree.");
+        for (int i = xRank + 1; i < start.length - 1; i += Integer.lowestOneBit(i)) {
+            int offset = start[i] - 1;
+            int size = start[i + 1] - start[i];
+            for (int j = countBelow(i, yRank) + 1; j <= size; j += Integer.lowestOneBit(j))
+                binaryIndexedTree[offset + j] += val;
+        }
+    }
+
+    //sum over the points with x rank < xCount and y rank < yCount
+    private long getSumOfRanks(int xCount, int yCount) {
+        long sum = 0;
+        for (int i = xCount; i > 0; i -= Integer.lowestOneBit(i)) {
+            int offset = start[i] - 1;
+            for (int j = countBelow(i, yCount); j > 0; j -= Integer.lowestOneBit(j))
+                sum += binaryIndexedTree[offset + j];
+        }
+        return sum;
+    }
+
+    //sum over the points with px <= x and py <= y
+    public long getSum(long x, long y) {
+        return getSumOfRanks(count(xValues, x, true), count(yValues, y, true));
+    }
+
+    //sum over the points in [firstX, lastX] x [firstY, lastY]
+    public long getSum(long firstX, long firstY, long lastX, long lastY) {
+        if (firstX > lastX || firstY > lastY)
+            return 0;
+        int xBelow = count(xValues, firstX, false), xAtMost = count(xValues, lastX, true);
+        int yBelow = count(yValues, firstY, false), yAtMost = count(yValues, lastY, true);
+        return getSumOfRanks(xAtMost, yAtMost) - getSumOfRanks(xBelow, yAtMost) - getSumOfRanks(xAtMost, yBelow) + getSumOfRanks(xBelow, yBelow);
+    }
+}
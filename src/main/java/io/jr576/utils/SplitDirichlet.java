@@ -0,0 +1,45 @@
+package io.jr576.utils;
+
+import java.util.function.LongUnaryOperator;
+
+//AbstractSplitDirichlet with long cells, values wrap modulo 2^64 like in a Dirichlet
+public class SplitDirichlet extends AbstractSplitDirichlet {
+    public final long[] small;
+    public final long[] large;
+
+    public SplitDirichlet(long upperbound) {
+        super(upperbound);
+        this.small = new long[upperboundSqrt + 1];
+        this.large = new long[largeCount + 1];
+    }
+
+    public SplitDirichlet(long upperbound, LongUnaryOperator function) {
+        this(upperbound);
+        fill(function);
+    }
+
+    public SplitDirichlet(Dirichlet dirichlet) {
+        this(dirichlet.upperbound);
+        fill(dirichlet);
+    }
+
+    @Override
+    public long getSmall(int q) {
+        return small[q];
+    }
+
+    @Override
+    public long getLarge(int d) {
+        return large[d];
+    }
+
+    @Override
+    protected void setSmall(int q, long value) {
+        small[q] = value;
+    }
+
+    @Override
+    protected void setLarge(int d, long value) {
+        large[d] = value;
+    }
+}
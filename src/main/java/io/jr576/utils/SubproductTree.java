@@ -0,0 +1,170 @@
+package io.jr576.utils;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+//Subproduct tree over a fixed set of points modulo the prime of an FFT, for evaluating polynomials at all points
+//and interpolating through them in O(m log^2 m). The tree is a heap over the points padded to a power of two,
+//node v holds the reversed product prod (1 - x_i t) over the points below it. Every level is built and walked in parallel.
+//Evaluation is the transposed (Tellegen) algorithm: it only needs middle products going down the tree, no divisions.
+public class SubproductTree {
+    private static final int naiveBreakpoint = 32;
+    private final FFT fft;
+    private final long prime;
+    private final int pointCount;
+    private final int leaves;
+    private final long[][] tree;
+
+    public SubproductTree(FFT fft, long[] points) {
+        this.fft = fft;
+        this.prime = fft.prime;
+        this.pointCount = points.length;
+        this.leaves = points.length == 0 ? 1 : FFT.largerTwoPow(points.length);
+        this.tree = new long[2 * leaves][];
+        for (int i = 0; i < leaves; i++)
+            tree[leaves + i] = i < pointCount ? new long[]{1, Math.floorMod(-points[i], prime)} : new long[]{1};
+        for (int levelStart = leaves / 2; levelStart >= 1; levelStart /= 2) {
+            int start = levelStart;
+            IntStream.range(start, 2 * start)
+                     .parallel()
+                     .forEach(v -> tree[v] = multiply(tree[2 * v], tree[2 * v + 1]));
+        }
+    }
+
+    private int count(int node) {
+        return tree[node].length - 1;
+    }
+
+    private long pow(long base, long exponent) {
+        long result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = result * base % prime;
+            base = base * base % prime;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private long[] multiply(long[] polA, long[] polB) {
+        long[] product = new long[polA.length + polB.length - 1];
+        if (Math.min(polA.length, polB.length) <= naiveBreakpoint) {
+            for (int i = 0; i < polA.length; i++)
+                for (int j = 0; j < polB.length; j++)
+                    product[i + j] = (product[i + j] + polA[i] * polB[j]) % prime;
+        } else
+            fft.multiply(polA, polB, product);
+        return product;
+    }
+
+    //transposed multiplication, result[j] = sum_k pol[j + k] * with[k] for j < length.
+    //A cyclic convolution of size >= pol.length suffices as long as it holds the kept coefficients,
+    //the wrap around only lands below them.
+    private long[] multiplyTransposed(long[] pol, long[] with, int length) {
+        long[] result = new long[length];
+        if (length == 0)
+            return result;
+        if (length <= naiveBreakpoint || with.length <= naiveBreakpoint) {
+            for (int j = 0; j < length; j++) {
+                long sum = 0;
+                for (int k = 0; k < with.length && j + k < pol.length; k++)
+                    sum = (sum + pol[j + k] * with[k]) % prime;
+                result[j] = sum;
+            }
+            return result;
+        }
+        int size = FFT.largerTwoPow(Math.max(pol.length, with.length + length - 1));
+        NttPlan plan = fft.plan(size);
+        long[] bufferPol = Arrays.copyOf(pol, size);
+        long[] bufferWith = new long[size];
+        for (int k = 0; k < with.length; k++)
+            bufferWith[with.length - 1 - k] = with[k];
+        plan.forwardBitReversed(bufferPol);
+        plan.forwardBitReversed(bufferWith);
+        plan.pointwiseMultiply(bufferPol, bufferWith);
+        plan.inverseProducts(bufferPol);
+        System.arraycopy(bufferPol, with.length - 1, result, 0, length);
+        return result;
+    }
+
+    //pol evaluated at every point
+    public long[] evaluate(long[] pol) {
+        if (pointCount == 0)
+            return new long[0];
+        int length = Math.max(pol.length, pointCount);
+        long[] padded = new long[length];
+        for (int i = 0; i < pol.length; i++)
+            padded[i] = Math.floorMod(pol[i], prime);
+        long[][] level = {multiplyTransposed(padded, new PowerSeries(fft).inverse(tree[1], length), pointCount)};
+        for (int levelStart = 1; levelStart < leaves; levelStart *= 2) {
+            int start = levelStart;
+            long[][] parentLevel = level;
+            long[][] childLevel = new long[2 * start][];
+            IntStream.range(0, start)
+                     .parallel()
+                     .forEach(i -> {
+                         int v = start + i;
+                         childLevel[2 * i] = multiplyTransposed(parentLevel[i], tree[2 * v + 1], count(2 * v));
+                         childLevel[2 * i + 1] = multiplyTransposed(parentLevel[i], tree[2 * v], count(2 * v + 1));
+                     });
+            level = childLevel;
+        }
+        long[] values = new long[pointCount];
+        for (int i = 0; i < pointCount; i++)
+            values[i] = level[i][0];
+        return values;
+    }
+
+    //the polynomial of degree < number of points taking the given values, the points have to be distinct
+    public long[] interpolate(long[] values) {
+        if (values.length != pointCount)
+            throw new IllegalArgumentException("Need exactly one value per point.");
+        if (pointCount == 0)
+            return new long[0];
+        long[] product = reverse(tree[1]);
+        long[] derivative = new long[pointCount];
+        for (int i = 1; i <= pointCount; i++)
+            derivative[i - 1] = product[i] * i % prime;
+        long[] derivativeValues = evaluate(derivative);
+        long[][] level = new long[leaves][];
+        for (int i = 0; i < leaves; i++) {
+            if (i >= pointCount)
+                level[i] = new long[0];
+            else if (derivativeValues[i] == 0)
+                throw new IllegalArgumentException("Points must be distinct.");
+            else
+                level[i] = new long[]{Math.floorMod(values[i], prime) * pow(derivativeValues[i], prime - 2) % prime};
+        }
+        //numerator(v) = numerator(left) * product(right) + numerator(right) * product(left)
+        for (int levelStart = leaves / 2; levelStart >= 1; levelStart /= 2) {
+            int start = levelStart;
+            long[][] childLevel = level;
+            long[][] parentLevel = new long[start][];
+            IntStream.range(0, start)
+                     .parallel()
+                     .forEach(i -> {
+                         int v = start + i;
+                         long[] left = childLevel[2 * i];
+                         long[] right = childLevel[2 * i + 1];
+                         if (right.length == 0) {
+                             parentLevel[i] = left;
+                             return;
+                         }
+                         long[] numerator = multiply(left, reverse(tree[2 * v + 1]));
+                         long[] rightPart = multiply(right, reverse(tree[2 * v]));
+                         for (int j = 0; j < rightPart.length; j++)
+                             numerator[j] = (numerator[j] + rightPart[j]) % prime;
+                         parentLevel[i] = Arrays.copyOf(numerator, count(v));
+                     });
+            level = parentLevel;
+        }
+        return level[0];
+    }
+
+    private static long[] reverse(long[] pol) {
+        long[] reversed = new long[pol.length];
+        for (int i = 0; i < pol.length; i++)
+            reversed[pol.length - 1 - i] = pol[i];
+        return reversed;
+    }
+}
@@ -0,0 +1,53 @@
+package io.jr576.utils;
+
+//Forward transform of a polynomial kept for repeated multiplications, obtained through FFT.transform(pol, maxOtherLength).
+//Every product with it only needs the transform of the other operand and one inverse transform.
+//Immutable after construction, so one instance can serve many threads at once.
+public class TransformedPolynomial {
+    private final FFT fft;
+    private final NttPlan plan;
+    private final long[] transformed; //bit reversed order, see NttPlan.forwardBitReversed
+    public final int length;
+    public final int maxOtherLength;
+
+    TransformedPolynomial(FFT fft, long[] pol, int maxOtherLength) {
+        this.fft = fft;
+        this.length = pol.length;
+        this.maxOtherLength = maxOtherLength;
+        this.plan = fft.plan(FFT.largerTwoPow(pol.length + maxOtherLength - 1));
+        this.transformed = new long[plan.size];
+        fft.load(pol, transformed, plan.size);
+        plan.forwardBitReversed(transformed);
+    }
+
+    //product with pol, of length this.length + pol.length - 1
+    public long[] multiply(long[] pol) {
+        if (pol.length > maxOtherLength)
+            throw new IllegalArgumentException("Polynomial longer than the transform was prepared for.");
+        long[] buffer = fft.borrowScratch(plan.size);
+        fft.load(pol, buffer, plan.size);
+        plan.forwardBitReversed(buffer);
+        plan.pointwiseMultiply(buffer, transformed);
+        plan.inverseProducts(buffer);
+        long[] product = new long[length + pol.length - 1];
+        System.arraycopy(buffer, 0, product, 0, product.length);
+        fft.returnScratch(buffer);
+        return product;
+    }
+
+    //product of two transforms of the same size, no forward transform needed at all
+    public long[] multiply(TransformedPolynomial other) {
+        if (other.plan != plan)
+            throw new IllegalArgumentException("Transforms have different sizes.");
+        if (length + other.length - 1 > plan.size)
+            throw new IllegalArgumentException("Product does not fit into the transform size.");
+        long[] buffer = fft.borrowScratch(plan.size);
+        System.arraycopy(transformed, 0, buffer, 0, plan.size);
+        plan.pointwiseMultiply(buffer, other.transformed);
+        plan.inverseProducts(buffer);
+        long[] product = new long[length + other.length - 1];
+        System.arraycopy(buffer, 0, product, 0, product.length);
+        fft.returnScratch(buffer);
+        return product;
+    }
+}
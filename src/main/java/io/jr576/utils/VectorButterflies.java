@@ -0,0 +1,74 @@
+package io.jr576.utils;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//SIMD version of the Montgomery butterflies of NttPlan, one 32-bit residue per 64-bit lane with the same lazy reduction into [0, 2*mod).
+//Only touched when the jdk.incubator.vector module is present, see NttPlan.vectorApiAvailable.
+final class VectorButterflies {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final long MASK = 0xFFFFFFFFL;
+    static final int lanes = SPECIES.length();
+
+    private VectorButterflies() {
+    }
+
+    private static LongVector multiply(LongVector a, LongVector b, long mod, long modInverse) {
+        LongVector product = a.mul(b);
+        LongVector reducer = product.mul(modInverse).and(MASK);
+        return product.add(reducer.mul(mod)).lanewise(VectorOperators.LSHR, 32);
+    }
+
+    private static LongVector add(LongVector a, LongVector b, long twoMod) {
+        LongVector sum = a.add(b);
+        return sum.sub(twoMod, sum.compare(VectorOperators.GE, twoMod));
+    }
+
+    private static LongVector subtract(LongVector a, LongVector b, long twoMod) {
+        LongVector difference = a.sub(b);
+        return difference.add(twoMod, difference.compare(VectorOperators.LT, 0));
+    }
+
+    //runs the butterflies j in [first, last) that fill whole vectors and returns the first j left for the scalar loop
+    static int forward(long[] buffer, long[] twiddles, int half, int offset, int first, int last, Montgomery montgomery) {
+        long mod = montgomery.mod;
+        long twoMod = 2 * mod;
+        long modInverse = montgomery.modInverse;
+        int j = first;
+        for (int i = offset + first; j + lanes <= last; j += lanes, i += lanes) {
+            LongVector evenPart = LongVector.fromArray(SPECIES, buffer, i);
+            LongVector oddPart = LongVector.fromArray(SPECIES, buffer, i + half);
+            LongVector twiddle = LongVector.fromArray(SPECIES, twiddles, half + j);
+            add(evenPart, oddPart, twoMod).intoArray(buffer, i);
+            multiply(subtract(evenPart, oddPart, twoMod), twiddle, mod, modInverse).intoArray(buffer, i + half);
+        }
+        return j;
+    }
+
+    static int inverse(long[] buffer, long[] twiddles, int half, int offset, int first, int last, Montgomery montgomery) {
+        long mod = montgomery.mod;
+        long twoMod = 2 * mod;
+        long modInverse = montgomery.modInverse;
+        int j = first;
+        for (int i = offset + first; j + lanes <= last; j += lanes, i += lanes) {
+            LongVector evenPart = LongVector.fromArray(SPECIES, buffer, i);
+            LongVector twiddle = LongVector.fromArray(SPECIES, twiddles, half + j);
+            LongVector oddPart = multiply(LongVector.fromArray(SPECIES, buffer, i + half), twiddle, mod, modInverse);
+            add(evenPart, oddPart, twoMod).intoArray(buffer, i);
+            subtract(evenPart, oddPart, twoMod).intoArray(buffer, i + half);
+        }
+        return j;
+    }
+
+    static void pointwiseMultiply(long[] buffer, long[] multiplyWith, int size, Montgomery montgomery) {
+        long mod = montgomery.mod;
+        long modInverse = montgomery.modInverse;
+        int i = 0;
+        for (; i + lanes <= size; i += lanes)
+            multiply(LongVector.fromArray(SPECIES, buffer, i), LongVector.fromArray(SPECIES, multiplyWith, i), mod, modInverse)
+                    .intoArray(buffer, i);
+        for (; i < size; i++)
+            buffer[i] = montgomery.multiply(buffer[i], multiplyWith[i]);
+    }
+}
@@ -0,0 +1,134 @@
+package io.jr576.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//multiply, multiplyMod, square and squareMod against the naive convolution of the point values, on the hyperbola path used below
+//the dense breakpoint and on the dense prefix path, which multiply(g, modulus, 0) forces for small upperbounds
+class DirichletTest {
+    private static final long[] upperbounds = {1, 2, 3, 4, 10, 99, 100, 1000, 12345, 100000};
+    private static final long[] mods = {2, 1000000007, 998244353L * 4, (1L << 61) - 1, 3L << 60};
+
+    private static long[] randomPoints(int n, Random random) {
+        long[] points = new long[n + 1];
+        for (int i = 1; i <= n; i++)
+            points[i] = random.nextLong();
+        return points;
+    }
+
+    //wrapping prefix sums for mod == 0, otherwise reduced ones, since sums wrapped modulo 2^64 are not congruent modulo mod
+    private static Dirichlet summatory(long n, long[] points, long mod) {
+        long[] prefix = new long[points.length];
+        for (int i = 1; i < points.length; i++)
+            prefix[i] = mod == 0 ? prefix[i - 1] + points[i] : Math.floorMod(prefix[i - 1] + Math.floorMod(points[i], mod), mod);
+        return new Dirichlet(n, q -> prefix[(int) q]);
+    }
+
+    //prefix sums of sum_{ab = i} f(a) g(b), wrapping modulo 2^64 for mod == 0
+    private static long[] naiveSummatory(long[] f, long[] g, long mod) {
+        int n = f.length - 1;
+        BigInteger bigMod = BigInteger.valueOf(mod);
+        long[] product = new long[n + 1];
+        for (int a = 1; a <= n; a++)
+            for (int b = 1; (long) a * b <= n; b++) {
+                if (mod == 0)
+                    product[a * b] += f[a] * g[b];
+                else {
+                    BigInteger term = BigInteger.valueOf(f[a]).multiply(BigInteger.valueOf(g[b])).add(BigInteger.valueOf(product[a * b]));
+                    product[a * b] = term.mod(bigMod).longValue();
+                }
+            }
+        for (int i = 1; i <= n; i++)
+            product[i] = mod == 0 ? product[i] + product[i - 1] : Math.floorMod(product[i] + product[i - 1], mod);
+        return product;
+    }
+
+    private static void assertMatches(long[] expected, Dirichlet actual, String message) {
+        for (int index = 1; index < actual.quotients.length; index++)
+            assertEquals(expected[(int) actual.quotients[index]], actual.values[index], message + " at " + actual.quotients[index]);
+    }
+
+    @Test
+    void multiplyMatchesNaiveConvolution() {
+        Random random = new Random(14);
+        for (long n : upperbounds) {
+            long[] f = randomPoints((int) n, random), g = randomPoints((int) n, random);
+            Dirichlet first = summatory(n, f, 0), second = summatory(n, g, 0);
+            long[] expected = naiveSummatory(f, g, 0);
+            assertMatches(expected, first.multiply(second), "multiply n = " + n);
+            assertMatches(expected, first.multiply(second, null, 0), "dense multiply n = " + n);
+            long[] expectedSquare = naiveSummatory(f, f, 0);
+            assertMatches(expectedSquare, first.square(), "square n = " + n);
+            assertMatches(expectedSquare, first.multiply(first, null, 0), "dense square n = " + n);
+        }
+    }
+
+    @Test
+    void multiplyModMatchesNaiveConvolution() {
+        Random random = new Random(1014);
+        for (long n : upperbounds) {
+            if (n > 12345)
+                continue;
+            for (long mod : mods) {
+                long[] f = randomPoints((int) n, random), g = randomPoints((int) n, random);
+                Dirichlet first = summatory(n, f, mod), second = summatory(n, g, mod);
+                Modulus modulus = Modulus.of(mod);
+                long[] expected = naiveSummatory(f, g, mod);
+                assertMatches(expected, first.multiplyMod(second, mod), "multiplyMod n = " + n + " mod " + mod);
+                assertMatches(expected, second.multiplyMod(first, mod), "swapped multiplyMod n = " + n + " mod " + mod);
+                assertMatches(expected, first.multiply(second, modulus, 0), "dense multiplyMod n = " + n + " mod " + mod);
+                long[] expectedSquare = naiveSummatory(f, f, mod);
+                assertMatches(expectedSquare, first.squareMod(mod), "squareMod n = " + n + " mod " + mod);
+                assertMatches(expectedSquare, first.multiply(first, modulus, 0), "dense squareMod n = " + n + " mod " + mod);
+            }
+        }
+    }
+
+    //small values, so the dense path is also checked at a larger upperbound where BigInteger would be slow
+    @Test
+    void denseMultiplyModMatchesNaiveConvolutionAtLargerUpperbound() {
+        Random random = new Random(2014);
+        int n = 1000000;
+        long mod = 1000000007;
+        long[] f = new long[n + 1], g = new long[n + 1];
+        for (int i = 1; i <= n; i++) {
+            f[i] = random.nextInt(1000);
+            g[i] = random.nextInt(1000);
+        }
+        long[] expected = naiveSummatory(f, g, 0);
+        for (int i = 1; i <= n; i++)
+            expected[i] %= mod;
+        Dirichlet first = summatory(n, f, mod), second = summatory(n, g, mod);
+        assertMatches(expected, first.multiply(second, Modulus.of(mod), 0), "dense multiplyMod");
+        assertMatches(expected, first.multiplyMod(second, mod), "multiplyMod");
+    }
+
+    //the dense path run from a pool of parallelism 8 splits its targets into 128 chunks instead of the 16 of a single core
+    @Test
+    void denseMultiplyMatchesNaiveConvolutionUnderParallelism() throws Exception {
+        Random random = new Random(3014);
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            for (long n : upperbounds) {
+                long[] f = randomPoints((int) n, random), g = randomPoints((int) n, random);
+                long mod = 1000000007;
+                Dirichlet first = summatory(n, f, 0), second = summatory(n, g, 0);
+                Dirichlet firstMod = summatory(n, f, mod), secondMod = summatory(n, g, mod);
+                assertMatches(naiveSummatory(f, g, 0), pool.submit(() -> first.multiply(second, null, 0)).get(),
+                              "parallel dense multiply n = " + n);
+                assertMatches(naiveSummatory(f, f, 0), pool.submit(() -> first.multiply(first, null, 0)).get(),
+                              "parallel dense square n = " + n);
+                if (n <= 12345)
+                    assertMatches(naiveSummatory(f, g, mod), pool.submit(() -> firstMod.multiply(secondMod, Modulus.of(mod), 0)).get(),
+                                  "parallel dense multiplyMod n = " + n);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}